@@ -1,10 +1,15 @@
 package ru.ifmo.rain.romanenko.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int GALLOP_RATIO = 8;
+
     private final List<T> data;
     private final Comparator<? super T> comparator;
+    private ArraySet<T> descending;
 
     private ArraySet(final List<T> data, final Comparator<? super T> comparator) {
         this.data = data;
@@ -24,10 +29,201 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     public ArraySet(final Collection<? extends T> other, final Comparator<? super T> comparator) {
-        final TreeSet<T> tmp = new TreeSet<>(comparator);
-        tmp.addAll(other);
-        this.data = List.copyOf(tmp);
-        this.comparator = comparator;
+        this(sortedUnique(other.toArray(), comparator), comparator);
+    }
+
+    public static <T> ArraySet<T> ofSorted(final List<? extends T> sorted, final Comparator<? super T> comparator) {
+        return new ArraySet<>(sortedUnique(sorted.toArray(), comparator), comparator);
+    }
+
+    // Takes the first size values, which must be already sorted and unique, without copying them
+    static <T> ArraySet<T> ofSortedArray(final Object[] values, final int size, final Comparator<? super T> comparator) {
+        return new ArraySet<>(wrap(values, size), comparator);
+    }
+
+    public static <T> ArraySet<T> fromSortedStream(final Stream<? extends T> sorted, final Comparator<? super T> comparator) {
+        return new ArraySet<>(sortedUnique(sorted.toArray(), comparator), comparator);
+    }
+
+    // Sorts and deduplicates in place, only the first of equal elements is kept (as TreeSet does)
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> sortedUnique(final Object[] values, final Comparator<? super T> comparator) {
+        if (comparator == null) {
+            for (final Object value : values) {
+                Objects.requireNonNull(value);
+            }
+        }
+        if (!isSorted(values, comparator)) {
+            Arrays.sort((T[]) values, comparator);
+        }
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || compare((T) values[size - 1], (T) values[i], comparator) != 0) {
+                values[size++] = values[i];
+            }
+        }
+        return wrap(values, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> wrap(final Object[] values, final int size) {
+        final List<T> result = Collections.unmodifiableList(Arrays.asList((T[]) values));
+        return size == values.length ? result : result.subList(0, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> boolean isSorted(final Object[] values, final Comparator<? super T> comparator) {
+        for (int i = 1; i < values.length; i++) {
+            if (compare((T) values[i - 1], (T) values[i], comparator) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> Comparator<? super T> commonComparator(final ArraySet<T> a, final ArraySet<T> b) {
+        if (!Objects.equals(a.comparator, b.comparator)) {
+            throw new IllegalArgumentException("Error: Sets must have the same comparator");
+        }
+        return a.comparator;
+    }
+
+    private static <T> boolean skewed(final ArraySet<T> small, final ArraySet<T> large) {
+        return (long) small.size() * GALLOP_RATIO < large.size();
+    }
+
+    // First index in [from, size) with element not less than key, found by exponential search from 'from'
+    private static <T> int gallop(final List<T> list, final int from, final T key, final Comparator<? super T> comparator) {
+        int l = from;
+        int step = 1;
+        while (l + step - 1 < list.size() && compare(list.get(l + step - 1), key, comparator) < 0) {
+            l += step;
+            step <<= 1;
+        }
+        int r = Math.min(l + step - 1, list.size());
+        while (l < r) {
+            final int m = (l + r) >>> 1;
+            if (compare(list.get(m), key, comparator) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    public static <T> ArraySet<T> union(final ArraySet<T> a, final ArraySet<T> b) {
+        final Comparator<? super T> comparator = commonComparator(a, b);
+        final Object[] result = new Object[a.size() + b.size()];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            final int cmp = compare(a.data.get(i), b.data.get(j), comparator);
+            if (cmp <= 0) {
+                result[size++] = a.data.get(i++);
+                j += cmp == 0 ? 1 : 0;
+            } else {
+                result[size++] = b.data.get(j++);
+            }
+        }
+        while (i < a.size()) {
+            result[size++] = a.data.get(i++);
+        }
+        while (j < b.size()) {
+            result[size++] = b.data.get(j++);
+        }
+        return new ArraySet<>(wrap(result, size), comparator);
+    }
+
+    public static <T> ArraySet<T> intersection(final ArraySet<T> a, final ArraySet<T> b) {
+        final Comparator<? super T> comparator = commonComparator(a, b);
+        final boolean aSmall = a.size() <= b.size();
+        final ArraySet<T> small = aSmall ? a : b;
+        final ArraySet<T> large = aSmall ? b : a;
+        final Object[] result = new Object[small.size()];
+        int size = 0;
+        if (skewed(small, large)) {
+            int j = 0;
+            for (int i = 0; i < small.size() && j < large.size(); i++) {
+                j = gallop(large.data, j, small.data.get(i), comparator);
+                if (j < large.size() && compare(large.data.get(j), small.data.get(i), comparator) == 0) {
+                    result[size++] = aSmall ? small.data.get(i) : large.data.get(j);
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.size() && j < b.size()) {
+                final int cmp = compare(a.data.get(i), b.data.get(j), comparator);
+                if (cmp == 0) {
+                    result[size++] = a.data.get(i);
+                }
+                i += cmp <= 0 ? 1 : 0;
+                j += cmp >= 0 ? 1 : 0;
+            }
+        }
+        return new ArraySet<>(wrap(result, size), comparator);
+    }
+
+    public static <T> ArraySet<T> difference(final ArraySet<T> a, final ArraySet<T> b) {
+        final Comparator<? super T> comparator = commonComparator(a, b);
+        final Object[] result = new Object[a.size()];
+        int size = 0;
+        if (skewed(a, b)) {
+            int j = 0;
+            for (final T t : a.data) {
+                j = gallop(b.data, j, t, comparator);
+                if (j == b.size() || compare(b.data.get(j), t, comparator) != 0) {
+                    result[size++] = t;
+                }
+            }
+        } else if (skewed(b, a)) {
+            int i = 0;
+            for (final T t : b.data) {
+                final int next = gallop(a.data, i, t, comparator);
+                while (i < next) {
+                    result[size++] = a.data.get(i++);
+                }
+                if (i < a.size() && compare(a.data.get(i), t, comparator) == 0) {
+                    i++;
+                }
+            }
+            while (i < a.size()) {
+                result[size++] = a.data.get(i++);
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.size()) {
+                final int cmp = j < b.size() ? compare(a.data.get(i), b.data.get(j), comparator) : -1;
+                if (cmp < 0) {
+                    result[size++] = a.data.get(i);
+                }
+                i += cmp <= 0 ? 1 : 0;
+                j += cmp >= 0 ? 1 : 0;
+            }
+        }
+        return new ArraySet<>(wrap(result, size), comparator);
+    }
+
+    public static <T> ArraySet<T> symmetricDifference(final ArraySet<T> a, final ArraySet<T> b) {
+        final Comparator<? super T> comparator = commonComparator(a, b);
+        final Object[] result = new Object[a.size() + b.size()];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            final int cmp = i == a.size() ? 1 : j == b.size() ? -1 : compare(a.data.get(i), b.data.get(j), comparator);
+            if (cmp < 0) {
+                result[size++] = a.data.get(i);
+            } else if (cmp > 0) {
+                result[size++] = b.data.get(j);
+            }
+            i += cmp <= 0 ? 1 : 0;
+            j += cmp >= 0 ? 1 : 0;
+        }
+        return new ArraySet<>(wrap(result, size), comparator);
     }
 
     @Override
@@ -120,8 +316,13 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public NavigableSet<T> descendingSet() {
-        final boolean reversed = !(data instanceof ReversedList) || ((ReversedList<T>) data).getReversed();
-        return new ArraySet<>(new ReversedList<>(data, reversed), Collections.reverseOrder(comparator));
+        if (descending == null) {
+            final boolean reversed = !(data instanceof ReversedList) || ((ReversedList<T>) data).getReversed();
+            final ArraySet<T> result = new ArraySet<>(new ReversedList<>(data, reversed), Collections.reverseOrder(comparator));
+            result.descending = this;
+            descending = result;
+        }
+        return descending;
     }
 
     @Override
@@ -129,34 +330,70 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         return descendingSet().iterator();
     }
 
-    @Override
-    public NavigableSet<T> subSet(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
-        final int l = fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
-        final int r = toInclusive ? floorIndex(toElement) : lowerIndex(toElement);
-        if (l == -1 || r == -1 || l > r) {
+    private int insertionPoint(final T t, final boolean after) {
+        final int pos = binSearch(t);
+        return pos >= 0 ? pos + (after ? 1 : 0) : -pos - 1;
+    }
+
+    private int rangeFrom(final T fromElement, final boolean fromInclusive) {
+        return insertionPoint(fromElement, !fromInclusive);
+    }
+
+    private int rangeTo(final T toElement, final boolean toInclusive) {
+        return insertionPoint(toElement, toInclusive);
+    }
+
+    private NavigableSet<T> subSetByIndex(final int l, final int r) {
+        if (l >= r) {
             return new ArraySet<>(comparator);
         }
-        return new ArraySet<>(data.subList(l, r + 1), comparator);
+        return new ArraySet<>(data.subList(l, r), comparator);
+    }
+
+    @Override
+    public NavigableSet<T> subSet(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
+        return subSetByIndex(rangeFrom(fromElement, fromInclusive), rangeTo(toElement, toInclusive));
     }
 
     @Override
     public NavigableSet<T> headSet(final T toElement, final boolean inclusive) {
-        return isEmpty() ? this : subSet(first(), true, toElement, inclusive);
+        return subSetByIndex(0, rangeTo(toElement, inclusive));
     }
 
     @Override
     public NavigableSet<T> tailSet(final T fromElement, final boolean inclusive) {
-        return isEmpty() ? this : subSet(fromElement, inclusive, last(), true);
+        return subSetByIndex(rangeFrom(fromElement, inclusive), size());
+    }
+
+    public void forEachInRange(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive,
+                               final Consumer<? super T> action) {
+        final int r = rangeTo(toElement, toInclusive);
+        for (int i = rangeFrom(fromElement, fromInclusive); i < r; i++) {
+            action.accept(data.get(i));
+        }
+    }
+
+    public int countInRange(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
+        return Math.max(0, rangeTo(toElement, toInclusive) - rangeFrom(fromElement, fromInclusive));
+    }
+
+    // Number of elements strictly less than t
+    public int rank(final T t) {
+        return insertionPoint(t, false);
+    }
+
+    public T select(final int index) {
+        return data.get(Objects.checkIndex(index, size()));
     }
 
     @SuppressWarnings("unchecked")
-    private int compare(final T fromElement, final T toElement) {
+    private static <T> int compare(final T fromElement, final T toElement, final Comparator<? super T> comparator) {
         return (comparator == null) ? ((Comparable<T>) fromElement).compareTo(toElement) : comparator.compare(fromElement, toElement);
     }
 
     @Override
     public SortedSet<T> subSet(final T fromElement, final T toElement) throws IllegalArgumentException {
-        if (compare(fromElement, toElement) > 0) {
+        if (compare(fromElement, toElement, comparator) > 0) {
             throw new IllegalArgumentException("Error: The left border should be less than the right");
         }
         return subSet(fromElement, true, toElement, false);
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.nio.ByteBuffer;
+
+abstract class BytesKey implements FixedWidthKey<byte[]> {
+    final int width;
+
+    BytesKey(final int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Key width must be positive");
+        }
+        this.width = width;
+    }
+
+    void checkWidth(final byte[] key) {
+        if (key.length != width) {
+            throw new IllegalArgumentException("Expected key of " + width + " bytes, found " + key.length);
+        }
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public byte[] get(final ByteBuffer buffer, final int offset) {
+        final byte[] result = new byte[width];
+        for (int i = 0; i < width; i++) {
+            result[i] = buffer.get(offset + i);
+        }
+        return result;
+    }
+
+    @Override
+    public void put(final ByteBuffer buffer, final int offset, final byte[] key) {
+        checkWidth(key);
+        for (int i = 0; i < width; i++) {
+            buffer.put(offset + i, key[i]);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+public interface FixedWidthKey<T> {
+    int width();
+
+    T get(ByteBuffer buffer, int offset);
+
+    void put(ByteBuffer buffer, int offset, T key);
+
+    // Compares the key stored at offset with the given one without materializing it
+    int compare(ByteBuffer buffer, int offset, T key);
+
+    Comparator<? super T> comparator();
+
+    FixedWidthKey<Integer> INT = new FixedWidthKey<>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public Integer get(final ByteBuffer buffer, final int offset) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public void put(final ByteBuffer buffer, final int offset, final Integer key) {
+            buffer.putInt(offset, key);
+        }
+
+        @Override
+        public int compare(final ByteBuffer buffer, final int offset, final Integer key) {
+            return Integer.compare(buffer.getInt(offset), key);
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return null;
+        }
+    };
+
+    FixedWidthKey<Long> LONG = new FixedWidthKey<>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public Long get(final ByteBuffer buffer, final int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public void put(final ByteBuffer buffer, final int offset, final Long key) {
+            buffer.putLong(offset, key);
+        }
+
+        @Override
+        public int compare(final ByteBuffer buffer, final int offset, final Long key) {
+            return Long.compare(buffer.getLong(offset), key);
+        }
+
+        @Override
+        public Comparator<? super Long> comparator() {
+            return null;
+        }
+    };
+
+    static FixedWidthKey<byte[]> bytes(final int width) {
+        return new BytesKey(width) {
+            private final Comparator<byte[]> comparator = Arrays::compareUnsigned;
+
+            @Override
+            public int compare(final ByteBuffer buffer, final int offset, final byte[] key) {
+                checkWidth(key);
+                for (int i = 0; i < width; i++) {
+                    final int cmp = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                }
+                return 0;
+            }
+
+            @Override
+            public Comparator<? super byte[]> comparator() {
+                return comparator;
+            }
+        };
+    }
+
+    static FixedWidthKey<byte[]> bytes(final int width, final Comparator<? super byte[]> comparator) {
+        Objects.requireNonNull(comparator);
+        return new BytesKey(width) {
+            @Override
+            public int compare(final ByteBuffer buffer, final int offset, final byte[] key) {
+                checkWidth(key);
+                return comparator.compare(get(buffer, offset), key);
+            }
+
+            @Override
+            public Comparator<? super byte[]> comparator() {
+                return comparator;
+            }
+        };
+    }
+}
@@ -0,0 +1,156 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.util.*;
+
+public class IntArraySet extends PrimitiveArraySet<Integer, int[], IntArraySet> {
+    private static final int BLOCK = 16;
+
+    private IntArraySet(final int[] data, final List<int[]> index, final int from, final int to, final boolean reversed) {
+        super(data, BLOCK, index, from, to, reversed);
+    }
+
+    public IntArraySet() {
+        super(new int[0], BLOCK);
+    }
+
+    public IntArraySet(final int[] values) {
+        super(sortedUnique(values.clone()), BLOCK);
+    }
+
+    public IntArraySet(final Collection<Integer> other) {
+        super(sortedUnique(other.stream().mapToInt(Integer::intValue).toArray()), BLOCK);
+    }
+
+    private static int[] sortedUnique(final int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    protected IntArraySet create(final List<int[]> index, final int from, final int to, final boolean reversed) {
+        return new IntArraySet(data, index, from, to, reversed);
+    }
+
+    @Override
+    protected long key(final int pos) {
+        return data[pos];
+    }
+
+    @Override
+    protected Integer element(final int pos) {
+        return data[pos];
+    }
+
+    @Override
+    protected int[] sample(final int[] level, final int count) {
+        final int[] upper = new int[(count + BLOCK - 1) / BLOCK * BLOCK];
+        Arrays.fill(upper, Integer.MAX_VALUE);
+        for (int i = 0; i < count; i++) {
+            upper[i] = level[i * BLOCK];
+        }
+        return upper;
+    }
+
+    @Override
+    protected int countLess(final int[] values, final int from, final int length, final long key) {
+        int count = 0;
+        for (int i = from; i < from + length; i++) {
+            count += values[i] < key ? 1 : 0;
+        }
+        return count;
+    }
+
+    private int getElement(final int ind, final int absent) {
+        return ind == -1 ? absent : data[ind];
+    }
+
+    public boolean contains(final int key) {
+        return containsKey(key);
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return contains((int) (Integer) Objects.requireNonNull(o));
+    }
+
+    public int lower(final int key, final int absent) {
+        return getElement(lowerIndex(key, false), absent);
+    }
+
+    public int floor(final int key, final int absent) {
+        return getElement(lowerIndex(key, true), absent);
+    }
+
+    public int ceiling(final int key, final int absent) {
+        return getElement(higherIndex(key, true), absent);
+    }
+
+    public int higher(final int key, final int absent) {
+        return getElement(higherIndex(key, false), absent);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int ind = 0;
+
+            @Override
+            public boolean hasNext() {
+                return ind < size();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return data[position(ind++)];
+            }
+        };
+    }
+
+    public int[] toIntArray() {
+        final int[] result = Arrays.copyOfRange(data, from, to);
+        if (reversed) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                final int tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public IntArraySet subSet(final int fromKey, final boolean fromInclusive, final int toKey, final boolean toInclusive) {
+        return keySubSet(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    public IntArraySet headSet(final int toKey, final boolean inclusive) {
+        return keyHeadSet(toKey, inclusive);
+    }
+
+    public IntArraySet tailSet(final int fromKey, final boolean inclusive) {
+        return keyTailSet(fromKey, inclusive);
+    }
+
+    public int firstInt() {
+        checkNotEmpty();
+        return data[position(0)];
+    }
+
+    public int lastInt() {
+        checkNotEmpty();
+        return data[position(size() - 1)];
+    }
+}
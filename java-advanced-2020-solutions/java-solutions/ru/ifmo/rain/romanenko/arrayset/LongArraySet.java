@@ -0,0 +1,156 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.util.*;
+
+public class LongArraySet extends PrimitiveArraySet<Long, long[], LongArraySet> {
+    private static final int BLOCK = 8;
+
+    private LongArraySet(final long[] data, final List<long[]> index, final int from, final int to, final boolean reversed) {
+        super(data, BLOCK, index, from, to, reversed);
+    }
+
+    public LongArraySet() {
+        super(new long[0], BLOCK);
+    }
+
+    public LongArraySet(final long[] values) {
+        super(sortedUnique(values.clone()), BLOCK);
+    }
+
+    public LongArraySet(final Collection<Long> other) {
+        super(sortedUnique(other.stream().mapToLong(Long::longValue).toArray()), BLOCK);
+    }
+
+    private static long[] sortedUnique(final long[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    protected LongArraySet create(final List<long[]> index, final int from, final int to, final boolean reversed) {
+        return new LongArraySet(data, index, from, to, reversed);
+    }
+
+    @Override
+    protected long key(final int pos) {
+        return data[pos];
+    }
+
+    @Override
+    protected Long element(final int pos) {
+        return data[pos];
+    }
+
+    @Override
+    protected long[] sample(final long[] level, final int count) {
+        final long[] upper = new long[(count + BLOCK - 1) / BLOCK * BLOCK];
+        Arrays.fill(upper, Long.MAX_VALUE);
+        for (int i = 0; i < count; i++) {
+            upper[i] = level[i * BLOCK];
+        }
+        return upper;
+    }
+
+    @Override
+    protected int countLess(final long[] values, final int from, final int length, final long key) {
+        int count = 0;
+        for (int i = from; i < from + length; i++) {
+            count += values[i] < key ? 1 : 0;
+        }
+        return count;
+    }
+
+    private long getElement(final int ind, final long absent) {
+        return ind == -1 ? absent : data[ind];
+    }
+
+    public boolean contains(final long key) {
+        return containsKey(key);
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return contains((long) (Long) Objects.requireNonNull(o));
+    }
+
+    public long lower(final long key, final long absent) {
+        return getElement(lowerIndex(key, false), absent);
+    }
+
+    public long floor(final long key, final long absent) {
+        return getElement(lowerIndex(key, true), absent);
+    }
+
+    public long ceiling(final long key, final long absent) {
+        return getElement(higherIndex(key, true), absent);
+    }
+
+    public long higher(final long key, final long absent) {
+        return getElement(higherIndex(key, false), absent);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int ind = 0;
+
+            @Override
+            public boolean hasNext() {
+                return ind < size();
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return data[position(ind++)];
+            }
+        };
+    }
+
+    public long[] toLongArray() {
+        final long[] result = Arrays.copyOfRange(data, from, to);
+        if (reversed) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                final long tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public LongArraySet subSet(final long fromKey, final boolean fromInclusive, final long toKey, final boolean toInclusive) {
+        return keySubSet(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    public LongArraySet headSet(final long toKey, final boolean inclusive) {
+        return keyHeadSet(toKey, inclusive);
+    }
+
+    public LongArraySet tailSet(final long fromKey, final boolean inclusive) {
+        return keyTailSet(fromKey, inclusive);
+    }
+
+    public long firstLong() {
+        checkNotEmpty();
+        return data[position(0)];
+    }
+
+    public long lastLong() {
+        checkNotEmpty();
+        return data[position(size() - 1)];
+    }
+}
@@ -0,0 +1,295 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Sorted unique fixed-width keys stored in a file and searched directly over its read-only mapping.
+// A single mapping is limited to 2 GB, so the file is mapped by segments of whole keys.
+public class MappedArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final ByteBuffer[] segments;
+    private final int perSegment;
+    private final FixedWidthKey<T> key;
+    private final long from;
+    private final long to;
+    private final boolean reversed;
+
+    private MappedArraySet(final ByteBuffer[] segments, final int perSegment, final FixedWidthKey<T> key,
+                           final long from, final long to, final boolean reversed) {
+        this.segments = segments;
+        this.perSegment = perSegment;
+        this.key = key;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    public static <T> MappedArraySet<T> open(final Path file, final FixedWidthKey<T> key) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final int width = key.width();
+            final long size = channel.size();
+            if (size % width != 0) {
+                throw new IOException("File size " + size + " is not a multiple of key width " + width);
+            }
+            final long count = size / width;
+            final int perSegment = Integer.MAX_VALUE / width;
+            final ByteBuffer[] segments = new ByteBuffer[(int) ((count + perSegment - 1) / perSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i * perSegment * width;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min((long) perSegment * width, size - start));
+            }
+            return new MappedArraySet<>(segments, perSegment, key, 0, count, false);
+        }
+    }
+
+    // Writes to a temporary file first, so an existing set is never left half-written
+    public static <T> void write(final Path file, final Iterable<? extends T> sorted, final FixedWidthKey<T> key) throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            writeKeys(tmp, sorted, key);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static <T> void writeKeys(final Path file, final Iterable<? extends T> sorted, final FixedWidthKey<T> key) throws IOException {
+        final int width = key.width();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE / width * width);
+        try (final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            T previous = null;
+            for (final T t : sorted) {
+                if (previous != null && compare(previous, t, key.comparator()) >= 0) {
+                    throw new IllegalArgumentException("Keys must be sorted and unique");
+                }
+                if (buffer.remaining() < width) {
+                    flush(channel, buffer);
+                }
+                key.put(buffer, buffer.position(), t);
+                buffer.position(buffer.position() + width);
+                previous = t;
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int compare(final T a, final T b, final Comparator<? super T> comparator) {
+        return (comparator == null) ? ((Comparable<T>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    private int compareAt(final long ind, final T t) {
+        return key.compare(segments[(int) (ind / perSegment)], (int) (ind % perSegment) * key.width(), t);
+    }
+
+    private T getAt(final long ind) {
+        return key.get(segments[(int) (ind / perSegment)], (int) (ind % perSegment) * key.width());
+    }
+
+    private T get(final long ind) {
+        return getAt(reversed ? to - 1 - ind : from + ind);
+    }
+
+    public long longSize() {
+        return to - from;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    private long insertionPoint(final T t, final boolean after) {
+        long l = from;
+        long r = to;
+        while (l < r) {
+            final long m = (l + r) >>> 1;
+            final int cmp = compareAt(m, t);
+            if (cmp < 0 || after && cmp == 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private long ascendingLowerIndex(final T t, final boolean inclusive) {
+        final long ind = insertionPoint(t, inclusive) - 1;
+        return ind >= from ? ind : -1;
+    }
+
+    private long ascendingHigherIndex(final T t, final boolean inclusive) {
+        final long ind = insertionPoint(t, !inclusive);
+        return ind < to ? ind : -1;
+    }
+
+    private T getElement(final long ind) {
+        return ind == -1 ? null : getAt(ind);
+    }
+
+    private T lower(final T t, final boolean inclusive) {
+        Objects.requireNonNull(t);
+        return getElement(reversed ? ascendingHigherIndex(t, inclusive) : ascendingLowerIndex(t, inclusive));
+    }
+
+    private T higher(final T t, final boolean inclusive) {
+        Objects.requireNonNull(t);
+        return getElement(reversed ? ascendingLowerIndex(t, inclusive) : ascendingHigherIndex(t, inclusive));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(final Object o) {
+        final T t = (T) Objects.requireNonNull(o);
+        final long ind = insertionPoint(t, false);
+        return ind < to && compareAt(ind, t) == 0;
+    }
+
+    @Override
+    public T lower(final T t) {
+        return lower(t, false);
+    }
+
+    @Override
+    public T floor(final T t) {
+        return lower(t, true);
+    }
+
+    @Override
+    public T ceiling(final T t) {
+        return higher(t, true);
+    }
+
+    @Override
+    public T higher(final T t) {
+        return higher(t, false);
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private long ind = 0;
+
+            @Override
+            public boolean hasNext() {
+                return ind < longSize();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(ind++);
+            }
+        };
+    }
+
+    @Override
+    public MappedArraySet<T> descendingSet() {
+        return new MappedArraySet<>(segments, perSegment, key, from, to, !reversed);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    private MappedArraySet<T> ascendingSubSet(final long l, final long r) {
+        return new MappedArraySet<>(segments, perSegment, key, l, Math.max(l, r), reversed);
+    }
+
+    @Override
+    public MappedArraySet<T> subSet(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
+        return reversed
+                ? ascendingSubSet(insertionPoint(toElement, !toInclusive), insertionPoint(fromElement, fromInclusive))
+                : ascendingSubSet(insertionPoint(fromElement, !fromInclusive), insertionPoint(toElement, toInclusive));
+    }
+
+    @Override
+    public MappedArraySet<T> headSet(final T toElement, final boolean inclusive) {
+        return reversed
+                ? ascendingSubSet(insertionPoint(toElement, !inclusive), to)
+                : ascendingSubSet(from, insertionPoint(toElement, inclusive));
+    }
+
+    @Override
+    public MappedArraySet<T> tailSet(final T fromElement, final boolean inclusive) {
+        return reversed
+                ? ascendingSubSet(from, insertionPoint(fromElement, inclusive))
+                : ascendingSubSet(insertionPoint(fromElement, !inclusive), to);
+    }
+
+    @Override
+    public SortedSet<T> subSet(final T fromElement, final T toElement) throws IllegalArgumentException {
+        if (compare(fromElement, toElement, comparator()) > 0) {
+            throw new IllegalArgumentException("Error: The left border should be less than the right");
+        }
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(final T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(final T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return reversed ? Collections.reverseOrder(key.comparator()) : key.comparator();
+    }
+
+    private void checkNotEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public T first() {
+        checkNotEmpty();
+        return get(0);
+    }
+
+    @Override
+    public T last() {
+        checkNotEmpty();
+        return get(longSize() - 1);
+    }
+}
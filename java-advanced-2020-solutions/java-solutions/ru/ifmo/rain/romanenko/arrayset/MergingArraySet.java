@@ -0,0 +1,732 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.UnaryOperator;
+
+// Readers work on an immutable State taken from a volatile field and never lock.
+// Writers are serialized and publish a new State with a copied (small) delta,
+// big deltas are merged into the base in one linear pass by the merger.
+// Views (subSet, headSet, tailSet, descendingSet) are immutable: they are bounded walks over the State
+// taken when the view was created, so making one costs O(1) and nothing is merged or copied.
+public class MergingArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int DEFAULT_THRESHOLD = 4096;
+
+    private final Comparator<? super T> comparator;
+    private final int threshold;
+    private final Executor merger;
+    private volatile State<T> state;
+    private boolean merging = false;
+
+    private static class Delta<T> {
+        private final ArraySet<T> added;
+        private final ArraySet<T> removed;
+
+        Delta(final ArraySet<T> added, final ArraySet<T> removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int size() {
+            return added.size() + removed.size();
+        }
+    }
+
+    private static class State<T> {
+        private final Comparator<? super T> comparator;
+        private final ArraySet<T> base;
+        private final Delta<T> frozen;
+        private final Delta<T> active;
+        private final int size;
+
+        State(final Comparator<? super T> comparator, final ArraySet<T> base, final Delta<T> frozen, final Delta<T> active, final int size) {
+            this.comparator = comparator;
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+            this.size = size;
+        }
+
+        boolean containsBelowActive(final T t) {
+            if (frozen != null) {
+                if (frozen.added.contains(t)) {
+                    return true;
+                }
+                if (frozen.removed.contains(t)) {
+                    return false;
+                }
+            }
+            return base.contains(t);
+        }
+
+        boolean contains(final T t) {
+            if (active.added.contains(t)) {
+                return true;
+            }
+            return !active.removed.contains(t) && containsBelowActive(t);
+        }
+
+        private List<ArraySet<T>> sources() {
+            return frozen == null
+                    ? List.of(base, active.added)
+                    : List.of(base, frozen.added, active.added);
+        }
+
+        private T best(final T a, final T b, final boolean up) {
+            if (a == null || b == null) {
+                return a == null ? b : a;
+            }
+            final int cmp = compare(a, b, comparator);
+            return (up ? cmp <= 0 : cmp >= 0) ? a : b;
+        }
+
+        T step(T key, boolean inclusive, final boolean up) {
+            while (true) {
+                T candidate = null;
+                for (final ArraySet<T> source : sources()) {
+                    final T t = up
+                            ? (inclusive ? source.ceiling(key) : source.higher(key))
+                            : (inclusive ? source.floor(key) : source.lower(key));
+                    candidate = best(candidate, t, up);
+                }
+                if (candidate == null || contains(candidate)) {
+                    return candidate;
+                }
+                key = candidate;
+                inclusive = false;
+            }
+        }
+
+        T extreme(final boolean up) {
+            T candidate = null;
+            for (final ArraySet<T> source : sources()) {
+                if (!source.isEmpty()) {
+                    candidate = best(candidate, up ? source.first() : source.last(), up);
+                }
+            }
+            return candidate == null || contains(candidate) ? candidate : step(candidate, false, up);
+        }
+
+        // Walk over the given range of every layer in the given order
+        Iterator<T> iterator(final UnaryOperator<NavigableSet<T>> range, final Comparator<? super T> order) {
+            return frozen == null
+                    ? new LayerIterator<>(order, range.apply(base), List.of(), List.of(),
+                            range.apply(active.added), range.apply(active.removed))
+                    : new LayerIterator<>(order, range.apply(base), range.apply(frozen.added), range.apply(frozen.removed),
+                            range.apply(active.added), range.apply(active.removed));
+        }
+    }
+
+    private static class Cursor<T> {
+        private final Iterator<T> iterator;
+        private T head;
+
+        Cursor(final Iterable<T> layer) {
+            iterator = layer.iterator();
+            advance();
+        }
+
+        void advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        // Skips the elements before t and checks whether t is the next one
+        boolean reach(final T t, final Comparator<? super T> order) {
+            while (head != null && compare(head, t, order) < 0) {
+                advance();
+            }
+            return head != null && compare(head, t, order) == 0;
+        }
+    }
+
+    // One cursor per layer, all moving forward in a single linear pass. An element is present if the active delta adds it,
+    // or the active delta does not remove it and either the frozen delta adds it or the base has it and the frozen delta does not remove it
+    private static class LayerIterator<T> implements Iterator<T> {
+        private final Comparator<? super T> order;
+        private final Cursor<T> base;
+        private final Cursor<T> frozenAdded;
+        private final Cursor<T> frozenRemoved;
+        private final Cursor<T> activeAdded;
+        private final Cursor<T> activeRemoved;
+        private T next;
+
+        LayerIterator(final Comparator<? super T> order, final Iterable<T> base,
+                      final Iterable<T> frozenAdded, final Iterable<T> frozenRemoved,
+                      final Iterable<T> activeAdded, final Iterable<T> activeRemoved) {
+            this.order = order;
+            this.base = new Cursor<>(base);
+            this.frozenAdded = new Cursor<>(frozenAdded);
+            this.frozenRemoved = new Cursor<>(frozenRemoved);
+            this.activeAdded = new Cursor<>(activeAdded);
+            this.activeRemoved = new Cursor<>(activeRemoved);
+            next = find();
+        }
+
+        private T least(final T a, final T b) {
+            return a == null || b != null && compare(b, a, order) < 0 ? b : a;
+        }
+
+        private T find() {
+            while (true) {
+                final T t = least(least(base.head, frozenAdded.head), activeAdded.head);
+                if (t == null) {
+                    return null;
+                }
+                final boolean inBase = base.reach(t, order);
+                final boolean inFrozen = frozenAdded.reach(t, order);
+                final boolean inActive = activeAdded.reach(t, order);
+                if (inBase) {
+                    base.advance();
+                }
+                if (inFrozen) {
+                    frozenAdded.advance();
+                }
+                if (inActive) {
+                    activeAdded.advance();
+                }
+                if (inActive || !activeRemoved.reach(t, order) && (inFrozen || inBase && !frozenRemoved.reach(t, order))) {
+                    return t;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final T result = next;
+            next = find();
+            return result;
+        }
+    }
+
+    // Every added element is absent below its delta and every removed one is present there,
+    // so the size of a range is a sum of range counts over the layers
+    private static class RangeView<T> extends AbstractSet<T> implements NavigableSet<T> {
+        private final State<T> state;
+        private final T from;
+        private final boolean fromInclusive;
+        private final T to;
+        private final boolean toInclusive;
+        private final boolean descending;
+
+        // A null bound means the range is not bounded on that side
+        RangeView(final State<T> state, final T from, final boolean fromInclusive,
+                  final T to, final boolean toInclusive, final boolean descending) {
+            this.state = state;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(final T t) {
+            if (from == null) {
+                return false;
+            }
+            final int cmp = compare(t, from, state.comparator);
+            return cmp < 0 || cmp == 0 && !fromInclusive;
+        }
+
+        private boolean tooHigh(final T t) {
+            if (to == null) {
+                return false;
+            }
+            final int cmp = compare(t, to, state.comparator);
+            return cmp > 0 || cmp == 0 && !toInclusive;
+        }
+
+        private T inRange(final T t) {
+            return t == null || tooLow(t) || tooHigh(t) ? null : t;
+        }
+
+        private T lowest() {
+            return inRange(from == null ? state.extreme(true) : state.step(from, fromInclusive, true));
+        }
+
+        private T highest() {
+            return inRange(to == null ? state.extreme(false) : state.step(to, toInclusive, false));
+        }
+
+        // Nearest element of the range above (up) or below t in ascending order
+        private T near(final T t, final boolean inclusive, final boolean up) {
+            Objects.requireNonNull(t);
+            if (up && tooLow(t)) {
+                return lowest();
+            }
+            if (!up && tooHigh(t)) {
+                return highest();
+            }
+            return inRange(state.step(t, inclusive, up));
+        }
+
+        private int count(final ArraySet<T> set) {
+            if (from == null) {
+                return to == null ? set.size() : set.headSet(to, toInclusive).size();
+            }
+            return to == null ? set.tailSet(from, fromInclusive).size() : set.countInRange(from, fromInclusive, to, toInclusive);
+        }
+
+        @Override
+        public int size() {
+            int size = count(state.base) + count(state.active.added) - count(state.active.removed);
+            if (state.frozen != null) {
+                size += count(state.frozen.added) - count(state.frozen.removed);
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(final Object o) {
+            final T t = (T) Objects.requireNonNull(o);
+            return !tooLow(t) && !tooHigh(t) && state.contains(t);
+        }
+
+        // Part of a layer inside the range, in the order of this view
+        private NavigableSet<T> layer(final NavigableSet<T> set) {
+            final NavigableSet<T> part;
+            if (from == null) {
+                part = to == null ? set : set.headSet(to, toInclusive);
+            } else {
+                part = to == null ? set.tailSet(from, fromInclusive) : set.subSet(from, fromInclusive, to, toInclusive);
+            }
+            return descending ? part.descendingSet() : part;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return state.iterator(this::layer, comparator());
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public T lower(final T t) {
+            return near(t, false, descending);
+        }
+
+        @Override
+        public T floor(final T t) {
+            return near(t, true, descending);
+        }
+
+        @Override
+        public T ceiling(final T t) {
+            return near(t, true, !descending);
+        }
+
+        @Override
+        public T higher(final T t) {
+            return near(t, false, !descending);
+        }
+
+        @Override
+        public T pollFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public T pollLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new RangeView<>(state, from, fromInclusive, to, toInclusive, !descending);
+        }
+
+        // Intersection with the ascending range [lo, hi], null bounds are not restricting
+        private NavigableSet<T> restrict(final T lo, final boolean loInclusive, final T hi, final boolean hiInclusive) {
+            final boolean newFrom = lo != null && !tooLow(lo);
+            final boolean newTo = hi != null && !tooHigh(hi);
+            return new RangeView<>(state,
+                    newFrom ? lo : from, newFrom ? loInclusive : fromInclusive,
+                    newTo ? hi : to, newTo ? hiInclusive : toInclusive, descending);
+        }
+
+        @Override
+        public NavigableSet<T> subSet(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
+            Objects.requireNonNull(fromElement);
+            Objects.requireNonNull(toElement);
+            return descending
+                    ? restrict(toElement, toInclusive, fromElement, fromInclusive)
+                    : restrict(fromElement, fromInclusive, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<T> headSet(final T toElement, final boolean inclusive) {
+            Objects.requireNonNull(toElement);
+            return descending ? restrict(toElement, inclusive, null, false) : restrict(null, false, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(final T fromElement, final boolean inclusive) {
+            Objects.requireNonNull(fromElement);
+            return descending ? restrict(null, false, fromElement, inclusive) : restrict(fromElement, inclusive, null, false);
+        }
+
+        @Override
+        public SortedSet<T> subSet(final T fromElement, final T toElement) {
+            if (compare(fromElement, toElement, comparator()) > 0) {
+                throw new IllegalArgumentException("Error: The left border should be less than the right");
+            }
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(final T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(final T fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return descending ? Collections.reverseOrder(state.comparator) : state.comparator;
+        }
+
+        private T extreme(final boolean first) {
+            final T t = first != descending ? lowest() : highest();
+            if (t == null) {
+                throw new NoSuchElementException();
+            }
+            return t;
+        }
+
+        @Override
+        public T first() {
+            return extreme(true);
+        }
+
+        @Override
+        public T last() {
+            return extreme(false);
+        }
+    }
+
+    public MergingArraySet(final Comparator<? super T> comparator) {
+        this(List.of(), comparator);
+    }
+
+    public MergingArraySet(final Collection<? extends T> other, final Comparator<? super T> comparator) {
+        this(other, comparator, DEFAULT_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    public MergingArraySet(final Collection<? extends T> other, final Comparator<? super T> comparator,
+                           final int threshold, final Executor merger) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Merge threshold must be positive");
+        }
+        this.comparator = comparator;
+        this.threshold = threshold;
+        this.merger = Objects.requireNonNull(merger);
+        final ArraySet<T> base = new ArraySet<>(other, comparator);
+        this.state = new State<>(comparator, base, null, emptyDelta(), base.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int compare(final T a, final T b, final Comparator<? super T> comparator) {
+        return (comparator == null) ? ((Comparable<T>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    private Delta<T> emptyDelta() {
+        return new Delta<>(new ArraySet<>(comparator), new ArraySet<>(comparator));
+    }
+
+    private ArraySet<T> with(final ArraySet<T> set, final T t) {
+        final List<T> result = new ArrayList<>(set.size() + 1);
+        result.addAll(set.headSet(t, false));
+        result.add(t);
+        result.addAll(set.tailSet(t, false));
+        return ArraySet.ofSorted(result, comparator);
+    }
+
+    private ArraySet<T> without(final ArraySet<T> set, final T t) {
+        final List<T> result = new ArrayList<>(set.size());
+        result.addAll(set.headSet(t, false));
+        result.addAll(set.tailSet(t, false));
+        return ArraySet.ofSorted(result, comparator);
+    }
+
+    private ArraySet<T> merge(final ArraySet<T> base, final Delta<T> delta) {
+        if (delta == null || delta.size() == 0) {
+            return base;
+        }
+        final Object[] result = new Object[base.size() + delta.added.size()];
+        int size = 0;
+        final Iterator<T> removed = delta.removed.iterator();
+        T nextRemoved = removed.hasNext() ? removed.next() : null;
+        final Iterator<T> it = base.iterator();
+        final Iterator<T> add = delta.added.iterator();
+        T a = it.hasNext() ? it.next() : null;
+        T b = add.hasNext() ? add.next() : null;
+        while (a != null || b != null) {
+            if (a == null || b != null && compare(b, a, comparator) < 0) {
+                result[size++] = b;
+                b = add.hasNext() ? add.next() : null;
+                continue;
+            }
+            while (nextRemoved != null && compare(nextRemoved, a, comparator) < 0) {
+                nextRemoved = removed.hasNext() ? removed.next() : null;
+            }
+            if (nextRemoved == null || compare(nextRemoved, a, comparator) != 0) {
+                result[size++] = a;
+            }
+            a = it.hasNext() ? it.next() : null;
+        }
+        return ArraySet.ofSortedArray(result, size, comparator);
+    }
+
+    public ArraySet<T> snapshot() {
+        final State<T> s = state;
+        return merge(merge(s.base, s.frozen), s.active);
+    }
+
+    // A frozen delta left by a failed or rejected merge is merged again on the next update
+    private void update(final ArraySet<T> base, final Delta<T> frozen, final Delta<T> active, final int size) {
+        if (!merging && frozen == null && active.size() >= threshold) {
+            state = new State<>(comparator, base, active, emptyDelta(), size);
+        } else {
+            state = new State<>(comparator, base, frozen, active, size);
+        }
+        if (!merging && state.frozen != null) {
+            merging = true;
+            try {
+                merger.execute(this::mergeFrozen);
+            } catch (final RejectedExecutionException e) {
+                merging = false;
+            }
+        }
+    }
+
+    private void mergeFrozen() {
+        ArraySet<T> base = null;
+        try {
+            final State<T> s = state;
+            base = merge(s.base, s.frozen);
+        } finally {
+            synchronized (this) {
+                merging = false;
+                if (base != null) {
+                    final State<T> current = state;
+                    update(base, null, current.active, current.size);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean add(final T t) {
+        Objects.requireNonNull(t);
+        synchronized (this) {
+            final State<T> s = state;
+            if (s.contains(t)) {
+                return false;
+            }
+            ArraySet<T> removed = s.active.removed;
+            ArraySet<T> added = s.active.added;
+            if (removed.contains(t)) {
+                removed = without(removed, t);
+            }
+            if (!s.containsBelowActive(t)) {
+                added = with(added, t);
+            }
+            update(s.base, s.frozen, new Delta<>(added, removed), s.size + 1);
+            return true;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(final Object o) {
+        final T t = (T) Objects.requireNonNull(o);
+        synchronized (this) {
+            final State<T> s = state;
+            if (!s.contains(t)) {
+                return false;
+            }
+            ArraySet<T> removed = s.active.removed;
+            ArraySet<T> added = s.active.added;
+            if (added.contains(t)) {
+                added = without(added, t);
+            }
+            if (s.containsBelowActive(t)) {
+                removed = with(removed, t);
+            }
+            update(s.base, s.frozen, new Delta<>(added, removed), s.size - 1);
+            return true;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(final Object o) {
+        return state.contains((T) Objects.requireNonNull(o));
+    }
+
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> iterator = state.iterator(UnaryOperator.identity(), comparator);
+        return new Iterator<>() {
+            private T last = null;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                MergingArraySet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public T lower(final T t) {
+        return state.step(Objects.requireNonNull(t), false, false);
+    }
+
+    @Override
+    public T floor(final T t) {
+        return state.step(Objects.requireNonNull(t), true, false);
+    }
+
+    @Override
+    public T ceiling(final T t) {
+        return state.step(Objects.requireNonNull(t), true, true);
+    }
+
+    @Override
+    public T higher(final T t) {
+        return state.step(Objects.requireNonNull(t), false, true);
+    }
+
+    private T poll(final boolean first) {
+        synchronized (this) {
+            final T t = state.extreme(first);
+            if (t != null) {
+                remove(t);
+            }
+            return t;
+        }
+    }
+
+    @Override
+    public T pollFirst() {
+        return poll(true);
+    }
+
+    @Override
+    public T pollLast() {
+        return poll(false);
+    }
+
+    private RangeView<T> view() {
+        return new RangeView<>(state, null, false, null, false, false);
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return view().descendingSet();
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(final T fromElement, final boolean fromInclusive, final T toElement, final boolean toInclusive) {
+        return view().subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(final T toElement, final boolean inclusive) {
+        return view().headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(final T fromElement, final boolean inclusive) {
+        return view().tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<T> subSet(final T fromElement, final T toElement) {
+        return view().subSet(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(final T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(final T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    private T extreme(final boolean first) {
+        final T t = state.extreme(first);
+        if (t == null) {
+            throw new NoSuchElementException();
+        }
+        return t;
+    }
+
+    @Override
+    public T first() {
+        return extreme(true);
+    }
+
+    @Override
+    public T last() {
+        return extreme(false);
+    }
+}
@@ -0,0 +1,252 @@
+package ru.ifmo.rain.romanenko.arrayset;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+// Navigation shared by IntArraySet and LongArraySet: a view [from, to) of a sorted array of type A, maybe reversed,
+// with an optional block index. Keys are passed as long, which holds every int as well,
+// subclasses only give typed access to their arrays
+abstract class PrimitiveArraySet<E extends Number, A, S extends PrimitiveArraySet<E, A, S>>
+        extends AbstractSet<E> implements NavigableSet<E> {
+    protected final A data;
+    private final int length;
+    private final int block;
+    private final List<A> index;
+    protected final int from;
+    protected final int to;
+    protected final boolean reversed;
+
+    protected PrimitiveArraySet(final A data, final int block, final List<A> index,
+                                final int from, final int to, final boolean reversed) {
+        this.data = data;
+        this.length = Array.getLength(data);
+        this.block = block;
+        this.index = index;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    protected PrimitiveArraySet(final A data, final int block) {
+        this(data, block, null, 0, Array.getLength(data), false);
+    }
+
+    protected abstract S create(List<A> index, int from, int to, boolean reversed);
+
+    // Key at the given position of data
+    protected abstract long key(int pos);
+
+    protected abstract E element(int pos);
+
+    // Level above the given one: the first key of each of its count blocks, padded by maximal keys to whole blocks
+    protected abstract A sample(A level, int count);
+
+    // Number of keys of values[from, from + length) less than key, without branches
+    protected abstract int countLess(A values, int from, int length, long key);
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    // Position in data of the element with the given index in this view
+    protected int position(final int ind) {
+        return reversed ? to - 1 - ind : from + ind;
+    }
+
+    // Static B+-tree over data: every level keeps the first key of each block of the level below,
+    // blocks are one cache line long, so a lookup touches one line per level instead of one per probe
+    public S withBlockIndex() {
+        if (index != null) {
+            @SuppressWarnings("unchecked") final S self = (S) this;
+            return self;
+        }
+        final Deque<A> levels = new ArrayDeque<>();
+        A level = data;
+        int size = length;
+        while (size > block) {
+            size = (size + block - 1) / block;
+            level = sample(level, size);
+            levels.addFirst(level);
+        }
+        return create(List.copyOf(levels), from, to, reversed);
+    }
+
+    private int blockLowerBound(final long key) {
+        int start = 0;
+        for (final A level : index) {
+            start = (start + Math.max(countLess(level, start, block, key) - 1, 0)) * block;
+        }
+        return start + countLess(data, start, Math.min(block, length - start), key);
+    }
+
+    private int insertionPoint(final long key, final boolean after) {
+        if (index != null) {
+            // After the last key there is no key + 1 to look for, it could overflow the type
+            final int pos = !after ? blockLowerBound(key)
+                    : length == 0 || key >= key(length - 1) ? length : blockLowerBound(key + 1);
+            return Math.max(from, Math.min(to, pos));
+        }
+        int l = from;
+        int r = to;
+        while (l < r) {
+            final int m = (l + r) >>> 1;
+            final long k = key(m);
+            if (k < key || after && k == key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private int ascendingLowerIndex(final long key, final boolean inclusive) {
+        final int ind = insertionPoint(key, inclusive) - 1;
+        return ind >= from ? ind : -1;
+    }
+
+    private int ascendingHigherIndex(final long key, final boolean inclusive) {
+        final int ind = insertionPoint(key, !inclusive);
+        return ind < to ? ind : -1;
+    }
+
+    protected int lowerIndex(final long key, final boolean inclusive) {
+        return reversed ? ascendingHigherIndex(key, inclusive) : ascendingLowerIndex(key, inclusive);
+    }
+
+    protected int higherIndex(final long key, final boolean inclusive) {
+        return reversed ? ascendingLowerIndex(key, inclusive) : ascendingHigherIndex(key, inclusive);
+    }
+
+    protected boolean containsKey(final long key) {
+        final int ind = insertionPoint(key, false);
+        return ind < to && key(ind) == key;
+    }
+
+    private E getElement(final int ind) {
+        return ind == -1 ? null : element(ind);
+    }
+
+    @Override
+    public E lower(final E t) {
+        return getElement(lowerIndex(t.longValue(), false));
+    }
+
+    @Override
+    public E floor(final E t) {
+        return getElement(lowerIndex(t.longValue(), true));
+    }
+
+    @Override
+    public E ceiling(final E t) {
+        return getElement(higherIndex(t.longValue(), true));
+    }
+
+    @Override
+    public E higher(final E t) {
+        return getElement(higherIndex(t.longValue(), false));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public S descendingSet() {
+        return create(index, from, to, !reversed);
+    }
+
+    private S ascendingSubSet(final long fromKey, final boolean fromInclusive, final long toKey, final boolean toInclusive) {
+        final int l = insertionPoint(fromKey, !fromInclusive);
+        final int r = insertionPoint(toKey, toInclusive);
+        return create(index, l, Math.max(l, r), reversed);
+    }
+
+    protected S keySubSet(final long fromKey, final boolean fromInclusive, final long toKey, final boolean toInclusive) {
+        return reversed
+                ? ascendingSubSet(toKey, toInclusive, fromKey, fromInclusive)
+                : ascendingSubSet(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    protected S keyHeadSet(final long toKey, final boolean inclusive) {
+        return reversed
+                ? ascendingSubSet(toKey, inclusive, Long.MAX_VALUE, true)
+                : ascendingSubSet(Long.MIN_VALUE, true, toKey, inclusive);
+    }
+
+    protected S keyTailSet(final long fromKey, final boolean inclusive) {
+        return reversed
+                ? ascendingSubSet(Long.MIN_VALUE, true, fromKey, inclusive)
+                : ascendingSubSet(fromKey, inclusive, Long.MAX_VALUE, true);
+    }
+
+    @Override
+    public S subSet(final E fromElement, final boolean fromInclusive, final E toElement, final boolean toInclusive) {
+        return keySubSet(fromElement.longValue(), fromInclusive, toElement.longValue(), toInclusive);
+    }
+
+    @Override
+    public S headSet(final E toElement, final boolean inclusive) {
+        return keyHeadSet(toElement.longValue(), inclusive);
+    }
+
+    @Override
+    public S tailSet(final E fromElement, final boolean inclusive) {
+        return keyTailSet(fromElement.longValue(), inclusive);
+    }
+
+    @Override
+    public S subSet(final E fromElement, final E toElement) throws IllegalArgumentException {
+        final long a = fromElement.longValue();
+        final long b = toElement.longValue();
+        if (reversed ? a < b : a > b) {
+            throw new IllegalArgumentException("Error: The left border should be less than the right");
+        }
+        return keySubSet(a, true, b, false);
+    }
+
+    @Override
+    public S headSet(final E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public S tailSet(final E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return reversed ? Collections.reverseOrder() : null;
+    }
+
+    protected void checkNotEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public E first() {
+        checkNotEmpty();
+        return element(position(0));
+    }
+
+    @Override
+    public E last() {
+        checkNotEmpty();
+        return element(position(size() - 1));
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cancels the {@link ParallelMapperImpl} calls it is given to from any thread.
+ * Queued parts of the calls are dropped and the running ones stop after the current element.
+ * One token may be given to several calls, cancellation can not be undone.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public class CancellationToken {
+    private final Queue<Runnable> listeners = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a token which is not cancelled.
+     */
+    public CancellationToken() {
+    }
+
+    /**
+     * Cancels all calls given this token, including the ones started later.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Runnable listener = listeners.poll(); listener != null; listener = listeners.poll()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Checks whether {@link #cancel()} was called.
+     *
+     * @return {@code true} if the token is cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Runs the listener at once if the token is already cancelled, at most once in any case
+    void addListener(final Runnable listener) {
+        listeners.add(listener);
+        if (cancelled && listeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    void removeListener(final Runnable listener) {
+        listeners.remove(listener);
+    }
+}
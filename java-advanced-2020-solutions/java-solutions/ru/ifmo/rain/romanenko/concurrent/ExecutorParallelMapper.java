@@ -0,0 +1,216 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * {@link ParallelMapper} running every element as a separate task of an {@link ExecutorService}.
+ * Instead of a fixed number of workers, the number of elements computed at once is limited by a semaphore,
+ * so blocking functions (e.g. I/O lookups) may run with a concurrency far above the number of processors.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public class ExecutorParallelMapper implements ParallelMapper {
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a mapper on the given executor, which is left running by {@link #close()}.
+     * If the executor is stopped by {@link ExecutorService#shutdownNow()}, the returned tasks
+     * should be passed to {@link #dropTasks(List)}, so that the calls waiting for them fail instead of hanging.
+     *
+     * @param executor executor to run tasks on
+     * @param concurrency maximal number of elements computed at once by all calls
+     */
+    public ExecutorParallelMapper(final ExecutorService executor, final int concurrency) {
+        this(executor, false, concurrency);
+    }
+
+    private ExecutorParallelMapper(final ExecutorService executor, final boolean ownsExecutor, final int concurrency) {
+        Objects.requireNonNull(executor);
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Creates a mapper starting a thread per task: a virtual one if the runtime supports them (Java 21+),
+     * otherwise a pooled platform one. The threads are stopped by {@link #close()}.
+     *
+     * @param concurrency maximal number of elements computed at once by all calls
+     * @return a new mapper
+     */
+    public static ExecutorParallelMapper perTask(final int concurrency) {
+        return new ExecutorParallelMapper(newPerTaskExecutor(), true, concurrency);
+    }
+
+    private static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Tasks of one call. The caller takes a permit before submitting each element, so it waits
+     * instead of queueing more than the concurrency limit, and every task gives its permit back.
+     * Tasks dropped by the executor never run, so they are finished by {@link Task#drop()} instead.
+     */
+    private class Job {
+        private final CountDownLatch done;
+        private volatile boolean cancelled = false;
+        private Throwable exception = null;
+
+        Job(final int size) {
+            done = new CountDownLatch(size);
+        }
+
+        void submit(final Runnable body) throws InterruptedException {
+            permits.acquire();
+            final Task task = new Task(this, body);
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                task.drop();
+                throw new RuntimeException("Mapper is over", e);
+            }
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+            synchronized (this) {
+                if (exception instanceof RuntimeException) {
+                    throw (RuntimeException) exception;
+                }
+                if (exception instanceof Error) {
+                    throw (Error) exception;
+                }
+                if (exception != null) {
+                    throw new RuntimeException(exception);
+                }
+            }
+        }
+
+        synchronized void setException(final Throwable e) {
+            if (exception == null) {
+                exception = e;
+            } else {
+                exception.addSuppressed(e);
+            }
+        }
+
+        void finish() {
+            permits.release();
+            done.countDown();
+        }
+    }
+
+    /**
+     * Element of a {@link Job} as submitted to the executor. It is either run or dropped, whichever happens first.
+     */
+    private class Task implements Runnable {
+        private final Job job;
+        private final Runnable body;
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        Task(final Job job, final Runnable body) {
+            this.job = job;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            if (!taken.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (!job.cancelled) {
+                    body.run();
+                }
+            } catch (final Throwable e) {
+                job.setException(e);
+            } finally {
+                job.finish();
+            }
+        }
+
+        void drop() {
+            if (taken.compareAndSet(false, true)) {
+                job.setException(new RuntimeException("Mapper is over: executor dropped a task"));
+                job.finish();
+            }
+        }
+    }
+
+    /**
+     * Fails the calls waiting for the given tasks, which the executor will never run,
+     * e.g. the ones returned by {@link ExecutorService#shutdownNow()}.
+     *
+     * @param tasks tasks removed from an executor
+     * @return the given tasks that were not submitted by a mapper
+     */
+    public static List<Runnable> dropTasks(final List<Runnable> tasks) {
+        final List<Runnable> foreign = new ArrayList<>();
+        for (final Runnable task : tasks) {
+            if (task instanceof Task) {
+                ((Task) task).drop();
+            } else {
+                foreign.add(task);
+            }
+        }
+        return foreign;
+    }
+
+    @Override
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f,
+                              final List<? extends T> args) throws InterruptedException {
+        if (closed) {
+            throw new RuntimeException("Mapper is over");
+        }
+        final Object[] data = new Object[args.size()];
+        final Job job = new Job(data.length);
+        try {
+            for (int i = 0; i < data.length; i++) {
+                final int ind = i;
+                job.submit(() -> data[ind] = f.apply(args.get(ind)));
+            }
+            job.await();
+        } catch (final InterruptedException | RuntimeException e) {
+            // Tasks not started yet skip their elements
+            job.cancelled = true;
+            throw e;
+        }
+        @SuppressWarnings("unchecked") final List<R> result = (List<R>) Arrays.asList(data);
+        return result;
+    }
+
+    /**
+     * Rejects new calls. Stops the threads if the executor was created by this instance,
+     * failing the calls whose tasks were not started, an executor given to the constructor is left running.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsExecutor) {
+            dropTasks(executor.shutdownNow());
+        }
+    }
+}
@@ -4,20 +4,23 @@ import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
- * {@link List} iterative parallelism (uses treads) support, implements interface {@link AdvancedIP}.
+ * {@link List} iterative parallelism (uses treads) support, implements interfaces {@link SearchIP} and {@link PrimitiveIP}.
  *
  * @author Demian Romanenko (mrnearall@gmail.com)
  * @version 1.0
  */
-public class IterativeParallelism implements AdvancedIP {
+public class IterativeParallelism implements SearchIP, PrimitiveIP, AutoCloseable {
     private final ParallelMapper mapper;
+    private final boolean ownsMapper;
 
     /**
      * Constructor if {@link ParallelMapper} given.
@@ -25,8 +28,24 @@ public class IterativeParallelism implements AdvancedIP {
      * @param mapper parallel mapper.
      */
     public IterativeParallelism(final ParallelMapper mapper) {
+        this(mapper, false);
+    }
+
+    private IterativeParallelism(final ParallelMapper mapper, final boolean ownsMapper) {
         Objects.requireNonNull(mapper);
         this.mapper = mapper;
+        this.ownsMapper = ownsMapper;
+    }
+
+    /**
+     * Creates an instance on its own {@link ExecutorParallelMapper#perTask(int)}, for blocking functions
+     * that need more parts in progress than there are threads worth keeping. The mapper is closed by {@link #close()}.
+     *
+     * @param concurrency maximal number of parts computed at once.
+     * @return a new instance.
+     */
+    public static IterativeParallelism perTask(final int concurrency) {
+        return new IterativeParallelism(ExecutorParallelMapper.perTask(concurrency), true);
     }
 
     /**
@@ -35,39 +54,115 @@ public class IterativeParallelism implements AdvancedIP {
      */
     public IterativeParallelism() {
         mapper = null;
+        ownsMapper = false;
+    }
+
+    /**
+     * Pooled constructor. Creates its own {@link ParallelMapperImpl} with {@code threads} long-lived workers,
+     * so calls reuse them instead of starting a new thread per part. The workers are stopped by {@link #close()}.
+     *
+     * @param threads number of worker threads.
+     */
+    public IterativeParallelism(final int threads) {
+        this(threads, Thread::new);
+    }
+
+    /**
+     * Pooled constructor with custom worker threads, e.g. daemon or virtual ones.
+     *
+     * @param threads number of worker threads.
+     * @param factory factory of worker threads.
+     * @see #IterativeParallelism(int)
+     */
+    public IterativeParallelism(final int threads, final ThreadFactory factory) {
+        this.mapper = new ParallelMapperImpl(threads, factory);
+        this.ownsMapper = true;
+    }
+
+    /**
+     * Half-open range {@code [from, to)} of list indices processed at once.
+     */
+    private static class Range {
+        private final int from;
+        private final int to;
+
+        Range(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
     }
 
-    private static <T> List<Stream<T>> split(final int threads, final List<T> values) {
-        final List<Stream<T>> parts = new ArrayList<>();
-        final int blockSize = values.size() / threads;
-        final int tail = values.size() % threads;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_ELEMENTS_PER_CHUNK = 16;
+
+    private static List<Range> split(final int parts, final int size) {
+        final List<Range> ranges = new ArrayList<>();
+        if (parts == 0) {
+            return ranges;
+        }
+        final int blockSize = size / parts;
+        final int tail = size % parts;
 
         int start = 0;
-        for (int i = 0; i < threads; i++) {
+        for (int i = 0; i < parts; i++) {
             final int currentBlockSize = blockSize + (i < tail ? 1 : 0);
             if (currentBlockSize > 0) {
-                parts.add(values.subList(start, start + currentBlockSize).stream());
+                ranges.add(new Range(start, start + currentBlockSize));
                 start += currentBlockSize;
             }
         }
-        return parts;
+        return ranges;
     }
 
-    private <T, P, R> R parallelAction(int threads,
-                                       final List<T> values,
-                                       final Function<Stream<T>, P> action,
-                                       final Function<Stream<P>, R> reducer) throws InterruptedException {
+    /**
+     * Number of chunks to cut {@code size} values into. More chunks than threads let fast workers take over
+     * the work of slow ones, but the partial results are combined sequentially, so their number is kept
+     * small relative to the share of a single thread. Small lists are split exactly into {@code threads} parts.
+     */
+    private static int chunks(final int threads, final int size) {
+        final int affordable = size / (threads * MIN_ELEMENTS_PER_CHUNK);
+        return Math.max(threads, Math.min(threads * CHUNKS_PER_THREAD, affordable));
+    }
+
+    private <P, R> R rangeAction(int threads,
+                                 final int size,
+                                 final Function<Range, P> action,
+                                 final Function<Stream<P>, R> reducer) throws InterruptedException {
         if (threads < 0) {
             throw new IllegalArgumentException("Number of threads must be positive");
         }
-        threads = Math.min(threads, values.size());
+        threads = Math.min(threads, size);
+        if (threads == 0) {
+            return reducer.apply(Stream.empty());
+        }
 
-        final List<Stream<T>> parts = split(threads, values);
-        return reducer.apply((mapper == null ? processRunner(action, parts) : mapper.map(action, parts)).stream());
+        final List<Range> parts = split(chunks(threads, size), size);
+        final List<P> results = new ArrayList<>(Collections.nCopies(parts.size(), null));
+        final AtomicInteger cursor = new AtomicInteger();
+        final Function<Integer, Void> worker = ignored -> {
+            for (int i = cursor.getAndIncrement(); i < parts.size(); i = cursor.getAndIncrement()) {
+                results.set(i, action.apply(parts.get(i)));
+            }
+            return null;
+        };
+        final List<Integer> workers = IntStream.range(0, threads).boxed().collect(Collectors.toList());
+        if (mapper == null) {
+            processRunner(worker, workers);
+        } else {
+            mapper.map(worker, workers);
+        }
+        return reducer.apply(results.stream());
     }
 
-    private static <T, R> List<R> processRunner (final Function<? super Stream<T>, R> mapper,
-                                                 final List<Stream<T>> parts) throws InterruptedException {
+    private <T, P, R> R parallelAction(final int threads,
+                                       final List<T> values,
+                                       final Function<Stream<T>, P> action,
+                                       final Function<Stream<P>, R> reducer) throws InterruptedException {
+        return rangeAction(threads, values.size(), range -> action.apply(values.subList(range.from, range.to).stream()), reducer);
+    }
+
+    private static <T, R> List<R> processRunner (final Function<? super T, R> mapper,
+                                                 final List<T> parts) throws InterruptedException {
         final List<R> partialResultValues = new ArrayList<>(Collections.nCopies(parts.size(), null));
         final List<Thread> workers = IntStream.range(0, parts.size())
                 .mapToObj(i -> new Thread(() ->
@@ -109,30 +204,103 @@ public class IterativeParallelism implements AdvancedIP {
         }
     }
 
-    @Override
-    public String join(final int threads, final List<?> values) throws InterruptedException {
-        return parallelAction(threads, values,
-                s -> s.map(Object::toString).collect(Collectors.joining()),
-                s -> s.collect(Collectors.joining()));
+    /**
+     * Second pass of {@link #scatter}: writes the output of a chunk measured by the first pass.
+     *
+     * @param <P> type of the first pass results.
+     * @param <B> type of the output buffer.
+     */
+    @FunctionalInterface
+    private interface ChunkWriter<P, B> {
+        void write(Range range, P part, B buffer, int offset);
     }
 
-    private <T, U> List<U> toList(final int threads,
-                                  final List<? extends T> values,
-                                  final Function<Stream<? extends T>, Stream<? extends U>> transform)
-            throws InterruptedException {
-        return parallelAction(threads, values,
-                s -> transform.apply(s).collect(Collectors.toList()),
-                streams -> streams.flatMap(List::stream).collect(Collectors.toList()));
+    /**
+     * Count-then-scatter: the first pass measures the output of every chunk, prefix sums of the lengths give
+     * the offsets, and the second pass writes every chunk at its offset of a single buffer of the total length.
+     */
+    private <P, B> B scatter(final int threads,
+                             final int size,
+                             final Function<Range, P> measure,
+                             final ToIntFunction<P> length,
+                             final IntFunction<B> allocate,
+                             final ChunkWriter<P, B> writer) throws InterruptedException {
+        final List<Map.Entry<Range, P>> parts = rangeAction(threads, size,
+                range -> Map.entry(range, measure.apply(range)),
+                s -> s.collect(Collectors.toList()));
+        final int[] offsets = new int[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            offsets[i + 1] = offsets[i] + length.applyAsInt(parts.get(i).getValue());
+        }
+        final B buffer = allocate.apply(offsets[parts.size()]);
+        rangeAction(threads, parts.size(), range -> {
+            for (int i = range.from; i < range.to; i++) {
+                writer.write(parts.get(i).getKey(), parts.get(i).getValue(), buffer, offsets[i]);
+            }
+            return null;
+        }, s -> null);
+        return buffer;
     }
 
+    /**
+     * {@inheritDoc}
+     * Every chunk joins its own values and reports the length, then the chunks are copied in parallel
+     * at their offsets of a single array of the exact total length.
+     */
+    @Override
+    public String join(final int threads, final List<?> values) throws InterruptedException {
+        return new String(scatter(threads, values.size(), range -> {
+            final StringBuilder part = new StringBuilder();
+            for (final Object value : values.subList(range.from, range.to)) {
+                part.append(value.toString());
+            }
+            return part;
+        }, StringBuilder::length, char[]::new, (range, part, buffer, offset) -> part.getChars(0, part.length(), buffer, offset)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every chunk marks its matches in a bit set, then writes them at its offset of a single presized mutable list,
+     * so the predicate is tested once per value and the matches are copied only once.
+     */
     @Override
     public <T> List<T> filter(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
-        return toList(threads, values, s -> s.filter(predicate));
+        return scatter(threads, values.size(), range -> {
+            final BitSet matches = new BitSet(range.to - range.from);
+            int i = 0;
+            for (final T value : values.subList(range.from, range.to)) {
+                if (predicate.test(value)) {
+                    matches.set(i);
+                }
+                i++;
+            }
+            return matches;
+        }, BitSet::cardinality, n -> new ArrayList<T>(Collections.nCopies(n, null)), (range, matches, buffer, offset) -> {
+            int i = 0;
+            int pos = offset;
+            for (final T value : values.subList(range.from, range.to)) {
+                if (matches.get(i++)) {
+                    buffer.set(pos++, value);
+                }
+            }
+        });
     }
 
+    /**
+     * {@inheritDoc}
+     * Every chunk writes its results directly at their final positions of a single mutable list.
+     */
     @Override
     public <T, U> List<U> map(final int threads, final List<? extends T> values, final Function<? super T, ? extends U> f) throws InterruptedException {
-        return toList(threads, values, s -> s.map(f));
+        final List<U> result = new ArrayList<>(Collections.nCopies(values.size(), null));
+        rangeAction(threads, values.size(), range -> {
+            int i = range.from;
+            for (final T value : values.subList(range.from, range.to)) {
+                result.set(i++, f.apply(value));
+            }
+            return null;
+        }, s -> null);
+        return result;
     }
 
     @Override
@@ -145,12 +313,37 @@ public class IterativeParallelism implements AdvancedIP {
         return maximum(threads, values, comparator.reversed());
     }
 
+    /**
+     * Checks that all values satisfy the predicate.
+     * The first counterexample raises a shared stop flag, after which other workers skip the rest of their parts.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to test.
+     * @param predicate test predicate.
+     * @return whether all values satisfy predicate.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
     @Override
     public <T> boolean all(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
-        return parallelAction(threads, values, s -> s.allMatch(predicate), s -> s.allMatch(Boolean::booleanValue));
-
+        final AtomicBoolean stop = new AtomicBoolean();
+        return parallelAction(threads, values, s -> {
+            final boolean result = s.takeWhile(value -> !stop.get()).allMatch(predicate);
+            if (!result) {
+                stop.set(true);
+            }
+            return result;
+        }, s -> s.allMatch(Boolean::booleanValue));
     }
 
+    /**
+     * Checks that any value satisfies the predicate. Stops as soon as one is found, see {@link #all}.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to test.
+     * @param predicate test predicate.
+     * @return whether any value satisfies predicate.
+     * @throws InterruptedException if executing thread was interrupted.
+     */
     @Override
     public <T> boolean any(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
         return !all(threads, values, predicate.negate());
@@ -170,4 +363,133 @@ public class IterativeParallelism implements AdvancedIP {
         final Function<Stream<T>, R> reducer = s -> s.map(lift).reduce(monoid.getIdentity(), monoid.getOperator());
         return parallelAction(threads, values, reducer, getMapReduce(monoid));
     }
+
+    @Override
+    public int reduceInt(final int threads, final int[] values, final IntMonoid monoid) throws InterruptedException {
+        final IntBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.length, range -> {
+            int result = monoid.getIdentity();
+            for (int i = range.from; i < range.to; i++) {
+                result = operator.applyAsInt(result, values[i]);
+            }
+            return result;
+        }, s -> s.mapToInt(Integer::intValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    @Override
+    public long reduceLong(final int threads, final long[] values, final LongMonoid monoid) throws InterruptedException {
+        final LongBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.length, range -> {
+            long result = monoid.getIdentity();
+            for (int i = range.from; i < range.to; i++) {
+                result = operator.applyAsLong(result, values[i]);
+            }
+            return result;
+        }, s -> s.mapToLong(Long::longValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    @Override
+    public double reduceDouble(final int threads, final double[] values, final DoubleMonoid monoid) throws InterruptedException {
+        final DoubleBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.length, range -> {
+            double result = monoid.getIdentity();
+            for (int i = range.from; i < range.to; i++) {
+                result = operator.applyAsDouble(result, values[i]);
+            }
+            return result;
+        }, s -> s.mapToDouble(Double::doubleValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    @Override
+    public <T> int mapReduceInt(final int threads, final List<T> values, final ToIntFunction<? super T> lift, final IntMonoid monoid) throws InterruptedException {
+        final IntBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.size(), range -> {
+            int result = monoid.getIdentity();
+            for (final T value : values.subList(range.from, range.to)) {
+                result = operator.applyAsInt(result, lift.applyAsInt(value));
+            }
+            return result;
+        }, s -> s.mapToInt(Integer::intValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    @Override
+    public <T> long mapReduceLong(final int threads, final List<T> values, final ToLongFunction<? super T> lift, final LongMonoid monoid) throws InterruptedException {
+        final LongBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.size(), range -> {
+            long result = monoid.getIdentity();
+            for (final T value : values.subList(range.from, range.to)) {
+                result = operator.applyAsLong(result, lift.applyAsLong(value));
+            }
+            return result;
+        }, s -> s.mapToLong(Long::longValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    @Override
+    public <T> double mapReduceDouble(final int threads, final List<T> values, final ToDoubleFunction<? super T> lift, final DoubleMonoid monoid) throws InterruptedException {
+        final DoubleBinaryOperator operator = monoid.getOperator();
+        return rangeAction(threads, values.size(), range -> {
+            double result = monoid.getIdentity();
+            for (final T value : values.subList(range.from, range.to)) {
+                result = operator.applyAsDouble(result, lift.applyAsDouble(value));
+            }
+            return result;
+        }, s -> s.mapToDouble(Double::doubleValue).reduce(monoid.getIdentity(), operator));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every worker stops scanning at the smallest index found so far.
+     */
+    @Override
+    public <T> int indexOf(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
+        final AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+        rangeAction(threads, values.size(), range -> {
+            int i = range.from;
+            for (final T value : values.subList(range.from, range.to)) {
+                if (i >= best.get()) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    best.accumulateAndGet(i, Math::min);
+                    break;
+                }
+                i++;
+            }
+            return null;
+        }, s -> null);
+        return best.get() == Integer.MAX_VALUE ? -1 : best.get();
+    }
+
+    @Override
+    public <T> Optional<T> findFirst(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
+        final int index = indexOf(threads, values, predicate);
+        return index == -1 ? Optional.empty() : Optional.of(values.get(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The first found value raises a shared stop flag, after which other workers skip the rest of their parts.
+     */
+    @Override
+    public <T> Optional<T> findAny(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
+        final AtomicBoolean stop = new AtomicBoolean();
+        return parallelAction(threads, values, s -> {
+            final Optional<? extends T> result = s.takeWhile(value -> !stop.get()).filter(predicate).findFirst();
+            if (result.isPresent()) {
+                stop.set(true);
+            }
+            return result;
+        }, s -> s.filter(Optional::isPresent).findFirst().map(Optional::get));
+    }
+
+    /**
+     * Stops the worker threads if they were created by this instance.
+     * A {@link ParallelMapper} given to the constructor is left running.
+     */
+    @Override
+    public void close() {
+        if (ownsMapper) {
+            mapper.close();
+        }
+    }
 }
@@ -4,7 +4,23 @@ import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,92 +32,179 @@ import java.util.stream.Stream;
  */
 public class ParallelMapperImpl implements ParallelMapper {
     private final List<Thread> workers;
-    private final SynchronizedQueue tasks = new SynchronizedQueue();
+    private final ParallelMapperMetrics metrics;
+    // Sources with pending tasks, one round-robin queue per priority, the highest priority first
+    private final List<Queue<Source>> ready = Stream.generate(ConcurrentLinkedQueue<Source>::new)
+            .limit(Priority.values().length).collect(Collectors.toList());
+    // Number of sources in ready queues, idle workers park on it
+    private final Semaphore available = new Semaphore(0);
+    // Permits left without a source by cancelled sources removed from the ready queues
+    private final AtomicInteger stale = new AtomicInteger();
+    private volatile boolean closed = false;
     private int remaining;
 
-    private static class SynchronizedQueue {
-        private final Queue<Runnable> tasks = new ArrayDeque<>();
-        private boolean closed = false;
+    private static final int RANGES_PER_WORKER = 4;
+    private static final int MAX_RANGE_SIZE = 1 << 12;
 
-        synchronized Runnable poll() throws InterruptedException {
-            while (tasks.isEmpty()) {
-                wait();
-            }
-            return tasks.poll();
+    /**
+     * Priority class of a call. Workers take tasks of a lower priority only when there are no tasks of the higher ones,
+     * calls of the same priority share workers in turn.
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    /**
+     * Tasks of one caller. A source is in the ready queue of its priority while it has pending tasks
+     * and goes to the tail after giving out each task, so a huge call does not hold back calls submitted after it.
+     */
+    private class Source {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Queue<Source> queue;
+
+        Source(final Priority priority) {
+            queue = ready.get(priority.ordinal());
         }
 
-        synchronized void add(final Runnable task) {
-            if (!closed) {
-                tasks.add(task);
-                notify();
+        void add(final Collection<Runnable> batch) {
+            tasks.addAll(batch);
+            if (pending.getAndAdd(batch.size()) == 0 && !batch.isEmpty()) {
+                schedule();
             }
         }
 
-        synchronized boolean isClosed() {
-            return closed;
+        // Returns null if the task was dropped by cancelling its call
+        Runnable poll() {
+            final Runnable task = tasks.poll();
+            if (pending.decrementAndGet() > 0) {
+                schedule();
+            }
+            return task;
         }
 
-        synchronized void close() {
-            closed = true;
+        // Drops the tasks not taken by workers yet and leaves the ready queue if nothing is pending, returns their number.
+        // A worker holding the source polls null and makes the last decrement, otherwise the source is removed here.
+        int drop() {
+            int dropped = 0;
+            while (tasks.poll() != null) {
+                dropped++;
+            }
+            final int count = dropped;
+            if (count > 0 && pending.updateAndGet(p -> Math.max(p - count, 1)) == 1 && queue.remove(this)) {
+                pending.set(0);
+                if (!available.tryAcquire()) {
+                    stale.incrementAndGet();
+                }
+            }
+            return dropped;
         }
 
-        synchronized Queue<Runnable> getRemaining() {
-            return tasks;
+        private void schedule() {
+            queue.add(this);
+            available.release();
         }
     }
 
-    private class SynchronizedTasks<R> {
-        private int remaining;
-        private final List<R> data;
-        private RuntimeException exception = null;
+    /**
+     * Tasks of one call: indices {@code [0, size)} are cut into a few ranges per worker, but not longer than
+     * {@link #MAX_RANGE_SIZE}, and every range is one task.
+     * Tasks write results into their own slots and count finished ranges down on a latch.
+     * Cancelling drops the queued ranges at once and the running ones stop after the current element.
+     */
+    private class Job {
+        private final Source source;
+        private final CountDownLatch done;
+        private final CancellationToken token;
+        private final Runnable cancelListener = this::cancel;
+        private final long startTime = System.nanoTime();
+        private volatile boolean cancelled = false;
+        private Throwable exception = null;
 
-        <T> SynchronizedTasks(final Function<? super T, ? extends R> f, final List<? extends T> args) {
-            remaining = args.size();
-            data = new ArrayList<>(Collections.nCopies(args.size(), null));
-            for (int i = 0; i < args.size(); i++) {
-                final int ind = i;
-                tasks.add(() -> {
-                    try {
-                        if (!tasks.isClosed()) {
-                            // :NOTE: Изменения после возврата значения
-                            set(ind, f.apply(args.get(ind)));
+        Job(final int size, final IntConsumer body, final Priority priority,
+            final CancellationToken token, final boolean failFast) {
+            this.token = token;
+            final int ranges = Math.max(Math.min(size, workers.size() * RANGES_PER_WORKER),
+                    (size + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+            done = new CountDownLatch(ranges);
+            final List<Runnable> batch = new ArrayList<>(ranges);
+            for (int i = 0; i < ranges; i++) {
+                final int from = (int) ((long) size * i / ranges);
+                final int to = (int) ((long) size * (i + 1) / ranges);
+                batch.add(() -> {
+                    for (int ind = from; ind < to && !closed && !cancelled; ind++) {
+                        try {
+                            body.accept(ind);
+                        } catch (final Throwable e) {
+                            setException(e);
+                            if (failFast) {
+                                cancel();
+                            }
                         }
-                    } catch (final RuntimeException e) {
-                        setException(e);
                     }
-                    shutdown();
+                    done.countDown();
                 });
             }
+            source = new Source(priority);
+            enqueue(source, batch);
+            if (token != null) {
+                token.addListener(cancelListener);
+            }
         }
 
-        // :NOTE: Неудачное имя
-        synchronized void shutdown() {
-            if(--remaining == 0) {
-                notify();
+        void cancel() {
+            cancelled = true;
+            final int dropped = source.drop();
+            metrics.drop(dropped);
+            for (int i = 0; i < dropped; i++) {
+                done.countDown();
             }
         }
 
-        synchronized List<R> getData() throws InterruptedException {
-            while (remaining > 0) {
-                wait();
+        void await() throws InterruptedException {
+            await(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        // Returns false if the call was cancelled on timeout; an interrupted caller cancels the call as well
+        boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+            try {
+                if (!done.await(timeout, unit)) {
+                    cancel();
+                    return false;
+                }
+            } catch (final InterruptedException e) {
+                cancel();
+                throw e;
+            } finally {
+                if (token != null) {
+                    token.removeListener(cancelListener);
+                }
+                metrics.mapFinished(startTime);
             }
-            if (exception != null) {
-                throw exception;
+            synchronized (this) {
+                if (exception instanceof RuntimeException) {
+                    throw (RuntimeException) exception;
+                }
+                if (exception instanceof Error) {
+                    throw (Error) exception;
+                }
+                if (exception != null) {
+                    throw new RuntimeException(exception);
+                }
             }
-            return data;
+            if (cancelled) {
+                throw new CancellationException("Map was cancelled");
+            }
+            return true;
         }
 
-        synchronized void setException(final RuntimeException e) {
+        synchronized void setException(final Throwable e) {
             if (exception == null) {
                 exception = e;
             } else {
                 exception.addSuppressed(e);
             }
         }
-
-        synchronized void set(final int pos, final R value) {
-            data.set(pos, value);
-        }
     }
 
     /**
@@ -110,42 +213,369 @@ public class ParallelMapperImpl implements ParallelMapper {
      * @param threads a number of threads
      */
     public ParallelMapperImpl(final int threads) {
+        this(threads, Thread::new);
+    }
+
+    /**
+     * Creates a {@link ParallelMapperImpl} instance with {@code threads} workers made by the given factory.
+     *
+     * @param threads a number of threads
+     * @param factory a factory of worker threads
+     */
+    public ParallelMapperImpl(final int threads, final ThreadFactory factory) {
+        Objects.requireNonNull(factory);
         if (threads <= 0) {
             throw new IllegalArgumentException("Number of threads must be positive");
         }
+        metrics = new ParallelMapperMetrics(threads);
         final Runnable currTask = () -> {
             try {
                 while (!Thread.interrupted()) {
-                    tasks.poll().run();
+                    available.acquire();
+                    final Runnable task = next();
+                    if (task != null) {
+                        task.run();
+                    }
                 }
             } catch (final InterruptedException ignored) {
                 // ignored
             }
         };
-        workers = Stream.generate(() -> new Thread(currTask)).limit(threads).collect(Collectors.toList());
+        workers = Stream.generate(() -> factory.newThread(currTask)).limit(threads).collect(Collectors.toList());
         workers.forEach(Thread::start);
     }
 
-    @Override
-    public <T, R> List<R> map(final Function<? super T, ? extends R> f,
-                              final List<? extends T> args) throws InterruptedException {
-        if (tasks.isClosed()) {
-            throw new RuntimeException("Mapper is over");
+    // The caller holds a permit, so some source is ready or is being requeued by another worker,
+    // unless the source of the permit was cancelled: then the permit is stale and the caller gets null
+    private Runnable next() {
+        while (true) {
+            for (final Queue<Source> queue : ready) {
+                final Source source = queue.poll();
+                if (source != null) {
+                    return source.poll();
+                }
+            }
+            if (stale.get() > 0 && stale.getAndUpdate(s -> Math.max(s - 1, 0)) > 0) {
+                return null;
+            }
         }
-        // :NOTE: Несинхронизованное изменение
-        remaining++;
-        final SynchronizedTasks<R> solver = new SynchronizedTasks<>(f, args);
+    }
+
+    // close() waits for enqueues in progress before draining the queues, so no task is lost
+    private void enqueue(final Source source, final Collection<Runnable> batch) {
         synchronized (this) {
-            if (--remaining == 0) {
-                notify();
+            if (closed) {
+                throw new RuntimeException("Mapper is over");
+            }
+            remaining++;
+        }
+        try {
+            source.add(metrics.submit(batch));
+        } finally {
+            synchronized (this) {
+                if (--remaining == 0) {
+                    notify();
+                }
+            }
+        }
+    }
+
+    private void run(final int size, final IntConsumer body) throws InterruptedException {
+        new Job(size, body, Priority.NORMAL, null, false).await();
+    }
+
+    // Reads up to count arguments and submits them as one batch, the batch read so far is submitted even if reading fails
+    private <T, R> void submit(final Source source, final Function<? super T, ? extends R> f,
+                               final ResultIterator<? extends T> args, final int count,
+                               final Consumer<CompletableFuture<R>> started,
+                               final Queue<CompletableFuture<R>> completed) throws InterruptedException {
+        final List<Runnable> batch = new ArrayList<>();
+        final List<CompletableFuture<R>> results = new ArrayList<>();
+        try {
+            while (results.size() < count && args.hasNext()) {
+                final T arg = args.next();
+                final CompletableFuture<R> result = new CompletableFuture<>();
+                batch.add(() -> {
+                    try {
+                        if (closed) {
+                            result.completeExceptionally(new RuntimeException("Mapper is over"));
+                        } else {
+                            result.complete(f.apply(arg));
+                        }
+                    } catch (final Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                    if (completed != null) {
+                        completed.add(result);
+                    }
+                });
+                results.add(result);
+            }
+        } finally {
+            if (!batch.isEmpty()) {
+                enqueue(source, batch);
+                results.forEach(started);
+            }
+        }
+    }
+
+    private static <R> R await(final CompletableFuture<R> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void checkWindow(final int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+    }
+
+    // The window is refilled only when at least half of it is free, so every refill is a batch
+    // of at least half a window submitted at once, not a task per consumed result
+    private static boolean needsRefill(final int inProgress, final int window) {
+        return window - inProgress >= (window + 1) / 2;
+    }
+
+    /**
+     * Lazily maps function {@code f} over {@code args} of unknown length, returning results in the order of arguments.
+     * At most {@code window} arguments are taken from {@code args} ahead of the consumer, so a slow consumer
+     * holds back the producer, while results are computed in parallel with consuming the earlier ones.
+     * The window is refilled in batches whenever at least half of it is free.
+     *
+     * @param f function to compute
+     * @param args arguments, are read by the thread iterating over the results
+     * @param window maximal number of arguments in progress
+     * @param <T> type of arguments
+     * @param <R> type of results
+     * @return iterator over results in the order of arguments, closing it cancels the remaining elements
+     */
+    public <T, R> ResultIterator<R> mapOrdered(final Function<? super T, ? extends R> f,
+                                               final ResultIterator<? extends T> args, final int window) {
+        checkWindow(window);
+        return new ResultIterator<>() {
+            private final Source source = new Source(Priority.NORMAL);
+            private final Queue<CompletableFuture<R>> inProgress = new ArrayDeque<>();
+            private boolean stopped = false;
+
+            @Override
+            public boolean hasNext() throws InterruptedException {
+                if (stopped) {
+                    return false;
+                }
+                if (needsRefill(inProgress.size(), window)) {
+                    submit(source, f, args, window - inProgress.size(), inProgress::add, null);
+                }
+                return !inProgress.isEmpty();
+            }
+
+            @Override
+            public R next() throws InterruptedException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return await(inProgress.poll());
+            }
+
+            @Override
+            public void close() {
+                if (!stopped) {
+                    stopped = true;
+                    metrics.drop(source.drop());
+                    inProgress.forEach(result -> result.cancel(false));
+                    inProgress.clear();
+                }
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #mapOrdered}, but returns results as soon as they are computed,
+     * so one slow argument does not hold back the others.
+     *
+     * @param f function to compute
+     * @param args arguments, are read by the thread iterating over the results
+     * @param window maximal number of arguments in progress
+     * @param <T> type of arguments
+     * @param <R> type of results
+     * @return iterator over results in the order of completion, closing it cancels the remaining elements
+     */
+    public <T, R> ResultIterator<R> mapUnordered(final Function<? super T, ? extends R> f,
+                                                 final ResultIterator<? extends T> args, final int window) {
+        checkWindow(window);
+        return new ResultIterator<>() {
+            private final Source source = new Source(Priority.NORMAL);
+            private final BlockingQueue<CompletableFuture<R>> completed = new LinkedBlockingQueue<>();
+            private int inProgress = 0;
+            private boolean stopped = false;
+
+            @Override
+            public boolean hasNext() throws InterruptedException {
+                if (stopped) {
+                    return false;
+                }
+                if (needsRefill(inProgress, window)) {
+                    submit(source, f, args, window - inProgress, result -> inProgress++, completed);
+                }
+                return inProgress > 0;
+            }
+
+            @Override
+            public R next() throws InterruptedException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final CompletableFuture<R> result = completed.take();
+                inProgress--;
+                return await(result);
+            }
+
+            @Override
+            public void close() {
+                if (!stopped) {
+                    stopped = true;
+                    metrics.drop(source.drop());
+                    completed.clear();
+                    inProgress = 0;
+                }
             }
+        };
+    }
+
+    @Override
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f,
+                              final List<? extends T> args) throws InterruptedException {
+        return map(f, args, Priority.NORMAL);
+    }
+
+    /**
+     * Same as {@link #map(Function, List)}, but runs with the given priority.
+     *
+     * @param f function to compute
+     * @param args arguments
+     * @param priority priority class of the call
+     * @param <T> type of arguments
+     * @param <R> type of results
+     * @return list of results, {@code i}-th element is {@code f(args[i])}
+     * @throws InterruptedException if calling thread was interrupted
+     */
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args,
+                              final Priority priority) throws InterruptedException {
+        Objects.requireNonNull(priority);
+        final Object[] data = new Object[args.size()];
+        new Job(data.length, i -> data[i] = f.apply(args.get(i)), priority, null, false).await();
+        @SuppressWarnings("unchecked") final List<R> result = (List<R>) Arrays.asList(data);
+        return result;
+    }
+
+    /**
+     * Same as {@link #map(Function, List)}, but gives up after the given time.
+     * The call is cancelled on timeout, so its elements stop occupying workers.
+     *
+     * @param f function to compute
+     * @param args arguments
+     * @param timeout maximal time to wait
+     * @param unit unit of {@code timeout}
+     * @param <T> type of arguments
+     * @param <R> type of results
+     * @return list of results, {@code i}-th element is {@code f(args[i])}
+     * @throws InterruptedException if calling thread was interrupted
+     * @throws TimeoutException if the results were not computed in time
+     */
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args,
+                              final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+        return map(f, args, Priority.NORMAL, null, false, timeout, unit);
+    }
+
+    /**
+     * Same as {@link #map(Function, List)}, but may be cancelled or stopped early.
+     * On cancellation, failure with {@code failFast}, timeout or interruption of the calling thread
+     * the queued elements of the call are dropped and the running ones stop after the current element.
+     *
+     * @param f function to compute
+     * @param args arguments
+     * @param priority priority class of the call
+     * @param token token cancelling the call, may be null
+     * @param failFast whether to stop the call on the first exception thrown by {@code f}
+     * @param timeout maximal time to wait
+     * @param unit unit of {@code timeout}
+     * @param <T> type of arguments
+     * @param <R> type of results
+     * @return list of results, {@code i}-th element is {@code f(args[i])}
+     * @throws InterruptedException if calling thread was interrupted
+     * @throws TimeoutException if the results were not computed in time
+     * @throws CancellationException if the call was cancelled by {@code token}
+     */
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args,
+                              final Priority priority, final CancellationToken token, final boolean failFast,
+                              final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+        Objects.requireNonNull(priority);
+        Objects.requireNonNull(unit);
+        final Object[] data = new Object[args.size()];
+        if (!new Job(data.length, i -> data[i] = f.apply(args.get(i)), priority, token, failFast).await(timeout, unit)) {
+            throw new TimeoutException("Map was not finished in " + timeout + " " + unit);
         }
-        return solver.getData();
+        @SuppressWarnings("unchecked") final List<R> result = (List<R>) Arrays.asList(data);
+        return result;
+    }
+
+    /**
+     * Computes function {@code f} on each index from {@code 0} to {@code size} (exclusive) in parallel.
+     *
+     * @param f function to compute
+     * @param size number of indices
+     * @param <R> type of results
+     * @return list of results, {@code i}-th element is {@code f(i)}
+     * @throws InterruptedException if calling thread was interrupted
+     */
+    public <R> List<R> mapIndices(final IntFunction<? extends R> f, final int size) throws InterruptedException {
+        final Object[] data = new Object[size];
+        run(size, i -> data[i] = f.apply(i));
+        @SuppressWarnings("unchecked") final List<R> result = (List<R>) Arrays.asList(data);
+        return result;
     }
 
+    /**
+     * Computes function {@code f} on each of {@code args} in parallel without boxing.
+     *
+     * @param f function to compute
+     * @param args arguments
+     * @return array of results, {@code i}-th element is {@code f(args[i])}
+     * @throws InterruptedException if calling thread was interrupted
+     */
+    public int[] mapInts(final IntUnaryOperator f, final int[] args) throws InterruptedException {
+        final int[] result = new int[args.length];
+        run(args.length, i -> result[i] = f.applyAsInt(args[i]));
+        return result;
+    }
+
+    /**
+     * Returns metrics of this mapper, which may be polled or registered as an MXBean.
+     *
+     * @return metrics of this mapper
+     */
+    public ParallelMapperMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops the workers, running the tasks left in the queues in the calling thread,
+     * and removes the metrics registration, if any.
+     */
     @Override
     public void close() {
-        tasks.close();
+        synchronized (this) {
+            closed = true;
+        }
         workers.forEach(Thread::interrupt);
         IterativeParallelism.joinThreadsWithIgnoredEx(workers);
         synchronized (this) {
@@ -157,6 +587,13 @@ public class ParallelMapperImpl implements ParallelMapper {
                 }
             }
         }
-        tasks.getRemaining().forEach(Runnable::run);
+        for (final Queue<Source> queue : ready) {
+            for (Source source = queue.poll(); source != null; source = queue.poll()) {
+                for (Runnable task = source.tasks.poll(); task != null; task = source.tasks.poll()) {
+                    task.run();
+                }
+            }
+        }
+        metrics.unregister();
     }
 }
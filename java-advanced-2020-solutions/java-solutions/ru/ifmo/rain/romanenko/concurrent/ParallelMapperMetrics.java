@@ -0,0 +1,250 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a {@link ParallelMapperImpl}: task counters, worker utilization
+ * and histograms of task wait, task execution and {@code map} call times.
+ * Recording takes no locks: counters are {@link LongAdder}s and histograms are arrays of atomic counters,
+ * so metrics are always on. They may be polled directly or exported through JMX with {@link #register(String)}.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public class ParallelMapperMetrics implements ParallelMapperMetricsMXBean {
+    private final int workers;
+    private final long created = System.nanoTime();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder busyTime = new LongAdder();
+    private final Histogram waitTime = new Histogram();
+    private final Histogram executionTime = new Histogram();
+    private final Histogram mapTime = new Histogram();
+    private ObjectName name = null;
+
+    /**
+     * Log-linear histogram of nanosecond values: every power of two is split into {@link #SUB_BUCKETS} equal buckets,
+     * so a bucket is at most 12.5% wide relatively to its values whatever their scale.
+     */
+    private static class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BITS) * SUB_BUCKETS);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private static int index(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        private static long upperBound(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final int shift = index / SUB_BUCKETS - 1;
+            return ((long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift) - 1;
+        }
+
+        void record(final long nanos) {
+            final long value = Math.max(nanos, 0);
+            counts.incrementAndGet(index(value));
+            max.accumulate(value);
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        // Upper bound of the bucket holding the value of the given rank, capped by the maximum
+        long percentile(final double fraction) {
+            final long rank = Math.max((long) Math.ceil(fraction * count()), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    ParallelMapperMetrics(final int workers) {
+        this.workers = workers;
+    }
+
+    // Tasks remember when they were submitted and report when they start and finish
+    List<Runnable> submit(final Collection<Runnable> batch) {
+        submitted.add(batch.size());
+        final long submitTime = System.nanoTime();
+        final List<Runnable> result = new ArrayList<>(batch.size());
+        for (final Runnable task : batch) {
+            result.add(() -> {
+                busy.increment();
+                final long start = System.nanoTime();
+                waitTime.record(start - submitTime);
+                try {
+                    task.run();
+                } finally {
+                    final long time = System.nanoTime() - start;
+                    busyTime.add(time);
+                    executionTime.record(time);
+                    completed.increment();
+                    busy.decrement();
+                }
+            });
+        }
+        return result;
+    }
+
+    void drop(final int tasks) {
+        dropped.add(tasks);
+    }
+
+    void mapFinished(final long startTime) {
+        mapTime.record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server
+     * as {@code ru.ifmo.rain.romanenko.concurrent:type=ParallelMapper,name=<name>}.
+     * The registration is removed when the mapper is closed.
+     *
+     * @param name name of the mapper, unique among registered ones
+     * @return name of the registered bean
+     * @throws JMException if the bean could not be registered, e.g. the name is taken
+     */
+    public synchronized ObjectName register(final String name) throws JMException {
+        if (this.name != null) {
+            throw new IllegalStateException("Metrics are already registered as " + this.name);
+        }
+        final ObjectName objectName = new ObjectName(
+                "ru.ifmo.rain.romanenko.concurrent:type=ParallelMapper,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes the registration made by {@link #register(String)}, if any.
+     */
+    public synchronized void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (final JMException ignored) {
+                // already unregistered
+            }
+            name = null;
+        }
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public long getBusyWorkers() {
+        return busy.sum();
+    }
+
+    @Override
+    public double getUtilization() {
+        final long elapsed = System.nanoTime() - created;
+        return elapsed == 0 ? 0 : Math.min((double) busyTime.sum() / elapsed / workers, 1);
+    }
+
+    @Override
+    public long getQueueLength() {
+        return Math.max(submitted.sum() - completed.sum() - busy.sum() - dropped.sum(), 0);
+    }
+
+    @Override
+    public long getTasksSubmitted() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getTasksCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getTasksDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getMapCalls() {
+        return mapTime.count();
+    }
+
+    @Override
+    public long getWaitTimeP50Micros() {
+        return micros(waitTime.percentile(0.5));
+    }
+
+    @Override
+    public long getWaitTimeP99Micros() {
+        return micros(waitTime.percentile(0.99));
+    }
+
+    @Override
+    public long getWaitTimeMaxMicros() {
+        return micros(waitTime.max.get());
+    }
+
+    @Override
+    public long getExecutionTimeP50Micros() {
+        return micros(executionTime.percentile(0.5));
+    }
+
+    @Override
+    public long getExecutionTimeP99Micros() {
+        return micros(executionTime.percentile(0.99));
+    }
+
+    @Override
+    public long getExecutionTimeMaxMicros() {
+        return micros(executionTime.max.get());
+    }
+
+    @Override
+    public long getMapTimeP50Micros() {
+        return micros(mapTime.percentile(0.5));
+    }
+
+    @Override
+    public long getMapTimeP99Micros() {
+        return micros(mapTime.percentile(0.99));
+    }
+
+    @Override
+    public long getMapTimeMaxMicros() {
+        return micros(mapTime.max.get());
+    }
+}
@@ -0,0 +1,130 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+/**
+ * Management interface of {@link ParallelMapperMetrics}, exported through JMX.
+ * Counters are totals since the mapper was created, times are in microseconds.
+ * Percentiles are approximate: a value is reported within about 12.5% above the real one.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public interface ParallelMapperMetricsMXBean {
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return number of workers.
+     */
+    int getWorkers();
+
+    /**
+     * Returns the number of workers running a task right now.
+     *
+     * @return number of busy workers.
+     */
+    long getBusyWorkers();
+
+    /**
+     * Returns the fraction of worker time spent running tasks since the mapper was created.
+     *
+     * @return utilization from {@code 0} to {@code 1}.
+     */
+    double getUtilization();
+
+    /**
+     * Returns the number of tasks waiting for a worker.
+     *
+     * @return queue length.
+     */
+    long getQueueLength();
+
+    /**
+     * Returns the number of tasks submitted.
+     *
+     * @return submitted tasks.
+     */
+    long getTasksSubmitted();
+
+    /**
+     * Returns the number of tasks run to the end, successfully or not.
+     *
+     * @return completed tasks.
+     */
+    long getTasksCompleted();
+
+    /**
+     * Returns the number of tasks dropped from the queue by cancelled calls.
+     *
+     * @return dropped tasks.
+     */
+    long getTasksDropped();
+
+    /**
+     * Returns the number of finished {@code map} calls.
+     *
+     * @return finished calls.
+     */
+    long getMapCalls();
+
+    /**
+     * Returns the median time a task waits in the queue.
+     *
+     * @return time in microseconds.
+     */
+    long getWaitTimeP50Micros();
+
+    /**
+     * Returns the 99th percentile of the time a task waits in the queue.
+     *
+     * @return time in microseconds.
+     */
+    long getWaitTimeP99Micros();
+
+    /**
+     * Returns the longest time a task waited in the queue.
+     *
+     * @return time in microseconds.
+     */
+    long getWaitTimeMaxMicros();
+
+    /**
+     * Returns the median time of running a task.
+     *
+     * @return time in microseconds.
+     */
+    long getExecutionTimeP50Micros();
+
+    /**
+     * Returns the 99th percentile of the time of running a task.
+     *
+     * @return time in microseconds.
+     */
+    long getExecutionTimeP99Micros();
+
+    /**
+     * Returns the longest time of running a task.
+     *
+     * @return time in microseconds.
+     */
+    long getExecutionTimeMaxMicros();
+
+    /**
+     * Returns the median wall time of a {@code map} call.
+     *
+     * @return time in microseconds.
+     */
+    long getMapTimeP50Micros();
+
+    /**
+     * Returns the 99th percentile of the wall time of a {@code map} call.
+     *
+     * @return time in microseconds.
+     */
+    long getMapTimeP99Micros();
+
+    /**
+     * Returns the longest wall time of a {@code map} call.
+     *
+     * @return time in microseconds.
+     */
+    long getMapTimeMaxMicros();
+}
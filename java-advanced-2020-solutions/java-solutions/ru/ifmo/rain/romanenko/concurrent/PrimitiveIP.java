@@ -0,0 +1,164 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Primitive-specialized parallel reductions: the same as {@link AdvancedIP#reduce} and {@link AdvancedIP#mapReduce},
+ * but without boxing of values and intermediate results.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public interface PrimitiveIP extends AdvancedIP {
+    /**
+     * Reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link IntMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    int reduceInt(int threads, int[] values, IntMonoid monoid) throws InterruptedException;
+
+    /**
+     * Reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link LongMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    long reduceLong(int threads, long[] values, LongMonoid monoid) throws InterruptedException;
+
+    /**
+     * Reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link DoubleMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    double reduceDouble(int threads, double[] values, DoubleMonoid monoid) throws InterruptedException;
+
+    /**
+     * Maps and reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param lift mapping function.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link IntMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    <T> int mapReduceInt(int threads, List<T> values, ToIntFunction<? super T> lift, IntMonoid monoid) throws InterruptedException;
+
+    /**
+     * Maps and reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param lift mapping function.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link LongMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    <T> long mapReduceLong(int threads, List<T> values, ToLongFunction<? super T> lift, LongMonoid monoid) throws InterruptedException;
+
+    /**
+     * Maps and reduces values using monoid.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to reduce.
+     * @param lift mapping function.
+     * @param monoid monoid to use.
+     *
+     * @return values reduced by provided monoid or {@link DoubleMonoid#getIdentity() identity} if not values specified.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    <T> double mapReduceDouble(int threads, List<T> values, ToDoubleFunction<? super T> lift, DoubleMonoid monoid) throws InterruptedException;
+
+    /**
+     * {@code int} counterpart of {@link Monoid}.
+     */
+    class IntMonoid {
+        private final int identity;
+        private final IntBinaryOperator operator;
+
+        public IntMonoid(final int identity, final IntBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public int getIdentity() {
+            return identity;
+        }
+
+        public IntBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * {@code long} counterpart of {@link Monoid}.
+     */
+    class LongMonoid {
+        private final long identity;
+        private final LongBinaryOperator operator;
+
+        public LongMonoid(final long identity, final LongBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public long getIdentity() {
+            return identity;
+        }
+
+        public LongBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * {@code double} counterpart of {@link Monoid}.
+     */
+    class DoubleMonoid {
+        private final double identity;
+        private final DoubleBinaryOperator operator;
+
+        public DoubleMonoid(final double identity, final DoubleBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public double getIdentity() {
+            return identity;
+        }
+
+        public DoubleBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+}
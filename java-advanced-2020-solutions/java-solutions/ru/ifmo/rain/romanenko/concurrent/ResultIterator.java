@@ -0,0 +1,63 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Iterator over results that may still be computing, so waiting for an element can be interrupted.
+ * Results of one streaming {@link ParallelMapperImpl} call can be given as arguments of another one.
+ * An iterator which is not read to the end should be closed, so that its remaining elements stop occupying workers.
+ *
+ * @param <E> type of elements.
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public interface ResultIterator<E> extends AutoCloseable {
+    /**
+     * Checks whether there are more elements.
+     *
+     * @return {@code true} if there are more elements.
+     * @throws InterruptedException if calling thread was interrupted.
+     */
+    boolean hasNext() throws InterruptedException;
+
+    /**
+     * Returns the next element, waiting for it if necessary.
+     *
+     * @return the next element.
+     * @throws InterruptedException if calling thread was interrupted.
+     * @throws NoSuchElementException if there are no more elements.
+     */
+    E next() throws InterruptedException;
+
+    /**
+     * Cancels computing the elements that were not taken yet, after that there are no more elements.
+     * Does nothing by default.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Adapts an ordinary {@link Iterator}, e.g. of a {@link java.util.stream.Stream}, of unknown length.
+     *
+     * @param iterator iterator to adapt.
+     * @param <E> type of elements.
+     * @return iterator over the same elements.
+     */
+    static <E> ResultIterator<E> of(final Iterator<? extends E> iterator) {
+        Objects.requireNonNull(iterator);
+        return new ResultIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+        };
+    }
+}
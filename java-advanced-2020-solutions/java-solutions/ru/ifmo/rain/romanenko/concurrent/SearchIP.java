@@ -0,0 +1,57 @@
+package ru.ifmo.rain.romanenko.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Short-circuiting search in {@link List} with iterative parallelism:
+ * workers stop as soon as the answer is known instead of scanning their whole parts.
+ *
+ * @author Demian Romanenko (mrnearall@gmail.com)
+ * @version 1.0
+ */
+public interface SearchIP extends AdvancedIP {
+    /**
+     * Returns index of the first value satisfying predicate.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to search in.
+     * @param predicate test predicate.
+     *
+     * @return index of the first value satisfying predicate or {@code -1} if there is no such value.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     */
+    <T> int indexOf(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException;
+
+    /**
+     * Returns the first value satisfying predicate.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to search in.
+     * @param predicate test predicate.
+     *
+     * @return the first value satisfying predicate or empty {@link Optional} if there is no such value.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     * @throws NullPointerException if the found value is {@code null}.
+     */
+    <T> Optional<T> findFirst(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException;
+
+    /**
+     * Returns any value satisfying predicate.
+     *
+     * @param threads number of concurrent threads.
+     * @param values values to search in.
+     * @param predicate test predicate.
+     *
+     * @return some value satisfying predicate or empty {@link Optional} if there is no such value.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     * @throws NullPointerException if the found value is {@code null}.
+     */
+    <T> Optional<T> findAny(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException;
+}
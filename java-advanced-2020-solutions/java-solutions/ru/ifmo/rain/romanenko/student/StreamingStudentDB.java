@@ -0,0 +1,327 @@
+package ru.ifmo.rain.romanenko.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Queries over students that are read once from a Spliterator and never held in memory all at once.
+// Aggregations keep only per-key state; sorted results are produced by an external merge sort
+// that spills sorted runs to temporary files and pushes the merged output to a consumer.
+// At most fanIn runs are open at once, more runs are merged in several passes through intermediate runs,
+// so memory is bounded by the run size plus fanIn read buffers whatever the input size.
+public class StreamingStudentDB {
+    private static final int DEFAULT_RUN_SIZE = 1 << 20;
+    private static final int DEFAULT_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int runSize;
+    private final int fanIn;
+    private final Path tempDirectory;
+
+    public StreamingStudentDB() {
+        this(DEFAULT_RUN_SIZE, null);
+    }
+
+    // tempDirectory may be null to use the default temporary-file directory
+    public StreamingStudentDB(final int runSize, final Path tempDirectory) {
+        this(runSize, DEFAULT_FAN_IN, tempDirectory);
+    }
+
+    public StreamingStudentDB(final int runSize, final int fanIn, final Path tempDirectory) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("Error: Run size should be positive");
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Error: Merge fan-in should be at least 2");
+        }
+        this.runSize = runSize;
+        this.fanIn = fanIn;
+        this.tempDirectory = tempDirectory;
+    }
+
+    private static final Comparator<Student> idComp = Comparator.naturalOrder();
+
+    private static String fullName(final Student student) {
+        return student.getFirstName() + ' ' + student.getLastName();
+    }
+
+    private static <K, V> Map<K, Set<V>> groupDistinct(final Spliterator<Student> students,
+                                                      final Function<Student, K> key, final Function<Student, V> value) {
+        final Map<K, Set<V>> result = new HashMap<>();
+        students.forEachRemaining(student -> result.computeIfAbsent(key.apply(student), k -> new HashSet<>()).add(value.apply(student)));
+        return result;
+    }
+
+    private static String getBiggest(final Map<String, Integer> sizes, final Comparator<String> tieBreak) {
+        return sizes.entrySet().stream()
+                .max(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey(tieBreak)))
+                .map(Map.Entry::getKey).orElse("");
+    }
+
+    private static <V> Map<String, Integer> sizes(final Map<String, Set<V>> groups) {
+        final Map<String, Integer> result = new HashMap<>();
+        groups.forEach((key, values) -> result.put(key, values.size()));
+        return result;
+    }
+
+    public String getLargestGroup(final Spliterator<Student> students) {
+        final Map<String, Integer> sizes = new HashMap<>();
+        students.forEachRemaining(student -> sizes.merge(student.getGroup(), 1, Integer::sum));
+        return getBiggest(sizes, Comparator.reverseOrder());
+    }
+
+    public String getLargestGroupFirstName(final Spliterator<Student> students) {
+        return getBiggest(sizes(groupDistinct(students, Student::getGroup, Student::getFirstName)), Comparator.reverseOrder());
+    }
+
+    public String getMostPopularName(final Spliterator<Student> students) {
+        return getBiggest(sizes(groupDistinct(students, StreamingStudentDB::fullName, Student::getGroup)), Comparator.naturalOrder());
+    }
+
+    public Set<String> getDistinctFirstNames(final Spliterator<Student> students) {
+        final Set<String> result = new TreeSet<>();
+        students.forEachRemaining(student -> result.add(student.getFirstName()));
+        return result;
+    }
+
+    public String getMinStudentFirstName(final Spliterator<Student> students) {
+        final Student[] min = new Student[1];
+        students.forEachRemaining(student -> {
+            if (min[0] == null || student.compareTo(min[0]) < 0) {
+                min[0] = student;
+            }
+        });
+        return min[0] == null ? "" : min[0].getFirstName();
+    }
+
+    public Map<String, String> findStudentNamesByGroup(final Spliterator<Student> students, final String group) {
+        final Map<String, String> result = new HashMap<>();
+        students.forEachRemaining(student -> {
+            if (group.equals(student.getGroup())) {
+                result.merge(student.getLastName(), student.getFirstName(), (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        });
+        return result;
+    }
+
+    public void sortStudentsById(final Spliterator<Student> students, final Consumer<? super Student> sink) {
+        sort(students, student -> true, idComp, sink);
+    }
+
+    public void sortStudentsByName(final Spliterator<Student> students, final Consumer<? super Student> sink) {
+        sort(students, student -> true, StudentDB.dataComp, sink);
+    }
+
+    public void findStudentsByFirstName(final Spliterator<Student> students, final String name, final Consumer<? super Student> sink) {
+        sort(students, student -> name.equals(student.getFirstName()), StudentDB.dataComp, sink);
+    }
+
+    public void findStudentsByLastName(final Spliterator<Student> students, final String name, final Consumer<? super Student> sink) {
+        sort(students, student -> name.equals(student.getLastName()), StudentDB.dataComp, sink);
+    }
+
+    public void findStudentsByGroup(final Spliterator<Student> students, final String group, final Consumer<? super Student> sink) {
+        sort(students, student -> group.equals(student.getGroup()), StudentDB.dataComp, sink);
+    }
+
+    // Students of a single group are collected in memory, groups are emitted in name order
+    private void getGroups(final Spliterator<Student> students, final Comparator<Student> order, final Consumer<? super Group> sink) {
+        final List<Student> current = new ArrayList<>();
+        sort(students, student -> true, Comparator.comparing(Student::getGroup).thenComparing(order), student -> {
+            if (!current.isEmpty() && !current.get(0).getGroup().equals(student.getGroup())) {
+                sink.accept(new Group(current.get(0).getGroup(), new ArrayList<>(current)));
+                current.clear();
+            }
+            current.add(student);
+        });
+        if (!current.isEmpty()) {
+            sink.accept(new Group(current.get(0).getGroup(), current));
+        }
+    }
+
+    public void getGroupsByName(final Spliterator<Student> students, final Consumer<? super Group> sink) {
+        getGroups(students, StudentDB.dataComp, sink);
+    }
+
+    public void getGroupsById(final Spliterator<Student> students, final Consumer<? super Group> sink) {
+        getGroups(students, idComp, sink);
+    }
+
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    // Stable: runs are sorted stably, runs are merged in groups of consecutive ones
+    // and equal heads are taken from the earlier run
+    private void sort(final Spliterator<Student> students, final Predicate<Student> filter,
+                      final Comparator<Student> cmp, final Consumer<? super Student> sink) {
+        final List<Run> runs = new ArrayList<>();
+        try {
+            final List<Student> buffer = new ArrayList<>();
+            while (students.tryAdvance(student -> {
+                if (filter.test(student)) {
+                    buffer.add(student);
+                }
+            })) {
+                if (buffer.size() == runSize) {
+                    runs.add(spill(buffer, cmp));
+                    buffer.clear();
+                }
+            }
+            buffer.sort(cmp);
+            if (runs.isEmpty()) {
+                buffer.forEach(sink);
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(spill(buffer, cmp));
+            }
+            buffer.clear();
+            // Every pass replaces the runs from the front, fanIn at a time, by merged runs at the back
+            while (runs.size() > fanIn) {
+                for (int left = runs.size(); left > 0; left -= fanIn) {
+                    final List<Run> group = new ArrayList<>(runs.subList(0, Math.min(fanIn, left)));
+                    runs.add(group.size() == 1 ? group.get(0) : writeRun(out -> merge(group, cmp, out)));
+                    runs.subList(0, group.size()).clear();
+                    if (group.size() > 1) {
+                        closeAll(group);
+                    }
+                }
+            }
+            merge(runs, cmp, sink::accept);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeAll(runs);
+        }
+    }
+
+    private Run spill(final List<Student> buffer, final Comparator<Student> cmp) throws IOException {
+        buffer.sort(cmp);
+        return writeRun(out -> {
+            for (final Student student : buffer) {
+                out.accept(student);
+            }
+        });
+    }
+
+    // Writes the students given by the producer to a new run file
+    private Run writeRun(final IOConsumer<IOConsumer<Student>> producer) throws IOException {
+        final Path file = tempDirectory == null
+                ? Files.createTempFile("students", ".run")
+                : Files.createTempFile(tempDirectory, "students", ".run");
+        final long[] size = {0};
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            producer.accept(student -> {
+                out.writeInt(student.getId());
+                writeString(out, student.getFirstName());
+                writeString(out, student.getLastName());
+                writeString(out, student.getGroup());
+                size[0]++;
+            });
+        } catch (final IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new Run(file, size[0]);
+    }
+
+    // Length and UTF-8 bytes: unlike writeUTF, there is no 64 KB limit on the encoded length
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void merge(final List<Run> runs, final Comparator<Student> cmp, final IOConsumer<Student> sink) throws IOException {
+        final PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(),
+                Comparator.comparing((Run run) -> run.head, cmp).thenComparingInt(run -> run.order));
+        for (int i = 0; i < runs.size(); i++) {
+            final Run run = runs.get(i);
+            run.order = i;
+            run.open();
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final Run run = queue.poll();
+            sink.accept(run.head);
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+    }
+
+    private static void closeAll(final List<Run> runs) {
+        UncheckedIOException error = null;
+        for (final Run run : runs) {
+            try {
+                run.close();
+            } catch (final IOException e) {
+                if (error == null) {
+                    error = new UncheckedIOException(e);
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static class Run implements Closeable {
+        private final Path file;
+        private long remaining;
+        // Position among the runs being merged, breaks ties between equal heads
+        private int order;
+        private DataInputStream in;
+        private Student head;
+
+        Run(final Path file, final long size) {
+            this.file = file;
+            this.remaining = size;
+        }
+
+        void open() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            remaining--;
+            head = new Student(in.readInt(), readString(in), readString(in), readString(in));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -5,35 +5,73 @@ import info.kgeorgiy.java.advanced.student.Group;
 import info.kgeorgiy.java.advanced.student.Student;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.*;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class StudentDB implements AdvancedStudentGroupQuery {
+    // null means sequential streams in the calling thread
+    private final ForkJoinPool pool;
+
+    public StudentDB() {
+        this.pool = null;
+    }
+
+    public StudentDB(final ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    // Parallel streams started from a task of the pool are split over that pool
+    private <T> T run(final Supplier<T> task) {
+        if (pool == null || ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+            return task.get();
+        }
+        return pool.submit(task::get).join();
+    }
+
+    private Stream<Student> stream(final Collection<Student> students) {
+        return pool == null ? students.stream() : students.parallelStream();
+    }
+
     private List<Group> getSpecialSortedList(final Stream<Map.Entry<String, List<Student>>> groupsStream, final UnaryOperator<List<Student>> sort) {
-        return groupsStream.map(elem -> new Group(elem.getKey(), sort.apply(elem.getValue())))
-                .collect(Collectors.toList());
+        return run(() -> groupsStream.map(elem -> new Group(elem.getKey(), sort.apply(elem.getValue())))
+                .collect(Collectors.toList()));
     }
 
     private String fullName(final Student student) {
         return student.getFirstName() + ' ' + student.getLastName();
     }
 
+    // Groups keep the encounter order of their students, so later stable sorts match the sequential ones
     private Stream<Map.Entry<String, List<Student>>> getStream(final Collection<Student> students, final Supplier<Map<String, List<Student>>> mapSupplier) {
-        return students.stream()
-                .collect(Collectors.groupingBy(Student::getGroup, mapSupplier, Collectors.toList()))
+        return run(() -> stream(students)
+                .collect(Collectors.groupingBy(Student::getGroup, mapSupplier, Collectors.toList())))
                 .entrySet().stream();
     }
 
+    // For order-insensitive aggregations: parallel workers fill one concurrent map instead of merging partial ones
+    private <K, D> Map<K, D> groupUnordered(final Collection<Student> students, final Function<Student, K> key, final Collector<Student, ?, D> downstream) {
+        return run(() -> pool == null
+                ? stream(students).collect(Collectors.groupingBy(key, downstream))
+                : stream(students).collect(Collectors.groupingByConcurrent(key, downstream)));
+    }
+
+    private Stream<Map.Entry<String, List<Student>>> getUnorderedStream(final Collection<Student> students) {
+        return groupUnordered(students, Student::getGroup, Collectors.toList()).entrySet().stream();
+    }
+
     private String getBiggestGroupFilter(final Stream<Map.Entry<String, List<Student>>> groupsStream, final ToIntFunction<List<Student>> filter) {
-        return groupsStream
+        return run(() -> groupsStream
                 .max(Comparator.comparingInt((Map.Entry<String, List<Student>> group) -> filter.applyAsInt(group.getValue()))
                         .thenComparing(Map.Entry::getKey, Collections.reverseOrder(String::compareTo)))
-                .map(Map.Entry::getKey).orElse("");
+                .map(Map.Entry::getKey).orElse(""));
     }
 
     private <T, C extends Collection<T>> C StudentsCollectionMapped(final Collection<Student> students, final Function<Student, T> mapper, final Supplier<C> collection) {
-        return students.stream().map(mapper).collect(Collectors.toCollection(collection));
+        return run(() -> stream(students).map(mapper).collect(Collectors.toCollection(collection)));
     }
 
     private <T> List<T> StudentsSpecialMappedList(final Collection<Student> students, final Function<Student, T> mapper) {
@@ -41,18 +79,18 @@ public class StudentDB implements AdvancedStudentGroupQuery {
     }
 
     private List<Student> sortedStudents(final Stream<Student> studentStream, final Comparator<Student> cmp) {
-        return studentStream.sorted(cmp).collect(Collectors.toList());
+        return run(() -> studentStream.sorted(cmp).collect(Collectors.toList()));
     }
 
     private List<Student> simplySortedStudents(final Collection<Student> students, final Comparator<Student> cmp) {
-        return sortedStudents(students.stream(), cmp);
+        return sortedStudents(stream(students), cmp);
     }
 
     private Stream<Student> filteredSpecialStudentsStream(final Collection<Student> students, final Predicate<Student> predicate) {
-        return students.stream().filter(predicate);
+        return stream(students).filter(predicate);
     }
 
-    private final Comparator<Student> dataComp = Comparator.comparing(Student::getLastName, String::compareTo)
+    static final Comparator<Student> dataComp = Comparator.comparing(Student::getLastName, String::compareTo)
             .thenComparing(Student::getFirstName, String::compareTo)
             .thenComparingInt(Student::getId);
 
@@ -60,6 +98,10 @@ public class StudentDB implements AdvancedStudentGroupQuery {
         return sortedStudents(filteredSpecialStudentsStream(students, predicate), dataComp);
     }
 
+    private List<Student> page(final Stream<Student> studentStream, final Comparator<Student> cmp, final int offset, final int limit) {
+        return run(() -> studentStream.collect(TopK.page(cmp, offset, limit)));
+    }
+
     private Predicate<Student> getGroupPredicate(final String group) {
         return student -> group.equals(student.getGroup());
     }
@@ -76,12 +118,12 @@ public class StudentDB implements AdvancedStudentGroupQuery {
 
     @Override
     public String getLargestGroup(final Collection<Student> students) {
-        return getBiggestGroupFilter(getStream(students, HashMap::new), List::size);
+        return getBiggestGroupFilter(getUnorderedStream(students), List::size);
     }
 
     @Override
     public String getLargestGroupFirstName(final Collection<Student> students) {
-        return getBiggestGroupFilter(getStream(students, HashMap::new), studentsList -> getDistinctFirstNames(studentsList).size());
+        return getBiggestGroupFilter(getUnorderedStream(students), studentsList -> getDistinctFirstNames(studentsList).size());
     }
 
     @Override
@@ -111,7 +153,7 @@ public class StudentDB implements AdvancedStudentGroupQuery {
 
     @Override
     public String getMinStudentFirstName(final List<Student> students) {
-        return students.stream().min(Student::compareTo).map(Student::getFirstName).orElse("");
+        return run(() -> stream(students).min(Student::compareTo).map(Student::getFirstName).orElse(""));
     }
 
     @Override
@@ -139,40 +181,86 @@ public class StudentDB implements AdvancedStudentGroupQuery {
         return filterAndSortByName(students, getGroupPredicate(group));
     }
 
+    public List<Student> sortStudentsById(final Collection<Student> students, final int offset, final int limit) {
+        return page(stream(students), Student::compareTo, offset, limit);
+    }
+
+    public List<Student> sortStudentsByName(final Collection<Student> students, final int offset, final int limit) {
+        return page(stream(students), dataComp, offset, limit);
+    }
+
+    public List<Student> findStudentsByFirstName(final Collection<Student> students, final String name, final int offset, final int limit) {
+        return page(filteredSpecialStudentsStream(students, student -> name.equals(student.getFirstName())), dataComp, offset, limit);
+    }
+
+    public List<Student> findStudentsByLastName(final Collection<Student> students, final String name, final int offset, final int limit) {
+        return page(filteredSpecialStudentsStream(students, student -> name.equals(student.getLastName())), dataComp, offset, limit);
+    }
+
+    public List<Student> findStudentsByGroup(final Collection<Student> students, final String group, final int offset, final int limit) {
+        return page(filteredSpecialStudentsStream(students, getGroupPredicate(group)), dataComp, offset, limit);
+    }
+
     @Override
     public Map<String, String> findStudentNamesByGroup(final Collection<Student> students, final String group) {
-        return filteredSpecialStudentsStream(students, getGroupPredicate(group))
-                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo)));
+        return run(() -> filteredSpecialStudentsStream(students, getGroupPredicate(group))
+                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo))));
     }
 
     @Override
     public String getMostPopularName(final Collection<Student> students) {
-        return students.stream().collect(Collectors.groupingBy(this::fullName, Collectors.mapping(Student::getGroup, Collectors.toSet())))
+        return groupUnordered(students, this::fullName, Collectors.mapping(Student::getGroup, Collectors.toSet()))
                 .entrySet().stream().max(Map.Entry.<String, Set<String>>comparingByValue(Comparator.comparingInt(Set::size)).thenComparing(Map.Entry.comparingByKey(String::compareTo)))
                 .map(Map.Entry::getKey).orElse("");
     }
 
-    private List<String> getObj(final List<String> names, final int[] indices) {
-        return Arrays.stream(indices).mapToObj(names::get).collect(Collectors.toList());
+    // Picks only the requested students: directly on random access lists,
+    // otherwise in one iteration visiting the indices in increasing order
+    private List<String> getObj(final Collection<Student> students, final int[] indices, final Function<Student, String> mapper) {
+        if (students instanceof List && students instanceof RandomAccess) {
+            final List<Student> list = (List<Student>) students;
+            return Arrays.stream(indices).mapToObj(i -> mapper.apply(list.get(i))).collect(Collectors.toList());
+        }
+        final int size = students.size();
+        final long[] order = new long[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+            if (indices[k] < 0 || indices[k] >= size) {
+                throw new IndexOutOfBoundsException("Index " + indices[k] + " out of bounds for length " + size);
+            }
+            order[k] = (long) indices[k] << 32 | k;
+        }
+        Arrays.sort(order);
+        final String[] result = new String[indices.length];
+        final Iterator<Student> it = students.iterator();
+        int position = -1;
+        Student current = null;
+        for (final long packed : order) {
+            while (position < (int) (packed >>> 32)) {
+                current = it.next();
+                position++;
+            }
+            result[(int) packed] = mapper.apply(current);
+        }
+        return new ArrayList<>(Arrays.asList(result));
     }
 
     @Override
     public List<String> getFirstNames(final Collection<Student> students, final int[] indices) {
-        return getObj(StudentsSpecialMappedList(students, Student::getFirstName), indices);
+        return getObj(students, indices, Student::getFirstName);
     }
 
     @Override
     public List<String> getLastNames(final Collection<Student> students, final int[] indices) {
-        return getObj(StudentsSpecialMappedList(students, Student::getLastName), indices);
+        return getObj(students, indices, Student::getLastName);
     }
 
     @Override
     public List<String> getGroups(final Collection<Student> students, final int[] indices) {
-        return getObj(StudentsSpecialMappedList(students, Student::getGroup), indices);
+        return getObj(students, indices, Student::getGroup);
     }
 
     @Override
     public List<String> getFullNames(final Collection<Student> students, final int[] indices) {
-        return getObj(StudentsSpecialMappedList(students, this::fullName), indices);
+        return getObj(students, indices, this::fullName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,391 @@
+package ru.ifmo.rain.romanenko.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Every indexed student is a row with an insertion number, so equal students are all kept
+// and orders with ties match the stable sorts of StudentDB. All updates and queries are O(log n)
+// apart from the size of their output.
+public class StudentIndex {
+    private static final Comparator<Row> nameComp = Comparator.comparing((Row row) -> row.student, StudentDB.dataComp)
+            .thenComparingLong(row -> row.seq);
+    private static final Comparator<Row> idComp = Comparator.comparing((Row row) -> row.student)
+            .thenComparingLong(row -> row.seq);
+    // The largest group is the last one; among equal ones the smallest name is the last
+    private static final Comparator<GroupIndex> groupSizeComp = Comparator.comparingInt((GroupIndex group) -> group.byName.size())
+            .thenComparing(group -> group.name, Comparator.reverseOrder());
+    private static final Comparator<GroupIndex> groupFirstNamesComp = Comparator.comparingInt((GroupIndex group) -> group.firstNames.size())
+            .thenComparing(group -> group.name, Comparator.reverseOrder());
+    // The most popular full name is the last one; among equal ones the greatest name is the last
+    private static final Comparator<Map.Entry<String, Integer>> popularityComp = Map.Entry.<String, Integer>comparingByValue()
+            .thenComparing(Map.Entry.comparingByKey());
+
+    private long rowCount = 0;
+    private final Roster roster = new Roster();
+    private final Map<Key, Deque<Row>> rows = new HashMap<>();
+    private final NavigableSet<Row> byName = new TreeSet<>(nameComp);
+    private final NavigableSet<Row> byId = new TreeSet<>(idComp);
+    private final NavigableMap<String, NavigableSet<Row>> byFirstName = new TreeMap<>();
+    private final Map<String, NavigableSet<Row>> byLastName = new HashMap<>();
+    private final NavigableMap<String, GroupIndex> groups = new TreeMap<>();
+    private final NavigableSet<GroupIndex> groupsBySize = new TreeSet<>(groupSizeComp);
+    private final NavigableSet<GroupIndex> groupsByFirstNames = new TreeSet<>(groupFirstNamesComp);
+    private final Map<String, Map<String, Integer>> fullNameGroups = new HashMap<>();
+    private final NavigableSet<Map.Entry<String, Integer>> popularity = new TreeSet<>(popularityComp);
+
+    private static class Row {
+        private final Student student;
+        private final long seq;
+        private int slot;
+
+        Row(final Student student, final long seq) {
+            this.student = student;
+            this.seq = seq;
+        }
+    }
+
+    // All fields of a student, students do not define equality themselves
+    private static class Key {
+        private final int id;
+        private final String firstName;
+        private final String lastName;
+        private final String group;
+
+        Key(final Student student) {
+            this.id = student.getId();
+            this.firstName = student.getFirstName();
+            this.lastName = student.getLastName();
+            this.group = student.getGroup();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return id == key.id && firstName.equals(key.firstName) && lastName.equals(key.lastName) && group.equals(key.group);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, firstName, lastName, group);
+        }
+    }
+
+    private static class GroupIndex {
+        private final String name;
+        private final NavigableSet<Row> byName = new TreeSet<>(nameComp);
+        private final NavigableSet<Row> byId = new TreeSet<>(idComp);
+        private final Map<String, Integer> firstNames = new HashMap<>();
+
+        GroupIndex(final String name) {
+            this.name = name;
+        }
+    }
+
+    // Rows in insertion order. Removed slots are left empty until the array is full and then squeezed out,
+    // a Fenwick tree over occupied slots finds the i-th row in O(log n)
+    private static class Roster {
+        private Row[] slots = new Row[16];
+        private int[] tree = new int[slots.length + 1];
+        private int used = 0;
+        private int size = 0;
+
+        private void update(final int slot, final int delta) {
+            for (int i = slot + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private void rebuild(final int capacity) {
+            final Row[] compacted = new Row[capacity];
+            tree = new int[capacity + 1];
+            int count = 0;
+            for (int i = 0; i < used; i++) {
+                if (slots[i] != null) {
+                    slots[i].slot = count;
+                    compacted[count++] = slots[i];
+                    tree[count] = 1;
+                }
+            }
+            for (int i = 1; i <= capacity; i++) {
+                final int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    tree[parent] += tree[i];
+                }
+            }
+            slots = compacted;
+            used = count;
+        }
+
+        void add(final Row row) {
+            if (used == slots.length) {
+                rebuild(Math.max(16, size * 2));
+            }
+            row.slot = used;
+            slots[used++] = row;
+            size++;
+            update(row.slot, 1);
+        }
+
+        void remove(final Row row) {
+            slots[row.slot] = null;
+            size--;
+            update(row.slot, -1);
+        }
+
+        Row get(final int index) {
+            int remaining = Objects.checkIndex(index, size);
+            int slot = 0;
+            for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+                if (slot + step <= slots.length && tree[slot + step] <= remaining) {
+                    slot += step;
+                    remaining -= tree[slot];
+                }
+            }
+            return slots[slot];
+        }
+    }
+
+    public StudentIndex() {
+    }
+
+    public StudentIndex(final Collection<Student> students) {
+        students.forEach(this::add);
+    }
+
+    private static String fullName(final Student student) {
+        return student.getFirstName() + ' ' + student.getLastName();
+    }
+
+    private static <K> void increment(final Map<K, Integer> counts, final K key) {
+        counts.merge(key, 1, Integer::sum);
+    }
+
+    private static <K> void decrement(final Map<K, Integer> counts, final K key) {
+        counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static <K> void addTo(final Map<K, NavigableSet<Row>> index, final K key, final Row row) {
+        index.computeIfAbsent(key, k -> new TreeSet<>(nameComp)).add(row);
+    }
+
+    private static <K> void removeFrom(final Map<K, NavigableSet<Row>> index, final K key, final Row row) {
+        index.computeIfPresent(key, (k, rows) -> rows.remove(row) && rows.isEmpty() ? null : rows);
+    }
+
+    private static List<Student> students(final Collection<Row> rows) {
+        return rows.stream().map(row -> row.student).collect(Collectors.toList());
+    }
+
+    // Group orders depend on the group contents, so a group leaves them while it changes
+    private void updateGroup(final GroupIndex group, final Runnable update) {
+        groupsBySize.remove(group);
+        groupsByFirstNames.remove(group);
+        update.run();
+        if (group.byName.isEmpty()) {
+            groups.remove(group.name);
+        } else {
+            groupsBySize.add(group);
+            groupsByFirstNames.add(group);
+        }
+    }
+
+    private void updatePopularity(final Student student, final boolean add) {
+        final String name = fullName(student);
+        final Map<String, Integer> nameGroups = fullNameGroups.computeIfAbsent(name, n -> new HashMap<>());
+        final int before = nameGroups.size();
+        if (add) {
+            increment(nameGroups, student.getGroup());
+        } else {
+            decrement(nameGroups, student.getGroup());
+        }
+        final int after = nameGroups.size();
+        if (before != after) {
+            popularity.remove(Map.entry(name, before));
+            if (after != 0) {
+                popularity.add(Map.entry(name, after));
+            }
+        }
+        if (after == 0) {
+            fullNameGroups.remove(name);
+        }
+    }
+
+    // Always adds: equal students are separate rows, as in a list
+    public boolean add(final Student student) {
+        final Row row = new Row(Objects.requireNonNull(student), rowCount++);
+        rows.computeIfAbsent(new Key(student), k -> new ArrayDeque<>()).add(row);
+        roster.add(row);
+        byName.add(row);
+        byId.add(row);
+        addTo(byFirstName, student.getFirstName(), row);
+        addTo(byLastName, student.getLastName(), row);
+        final GroupIndex group = groups.computeIfAbsent(student.getGroup(), GroupIndex::new);
+        updateGroup(group, () -> {
+            group.byName.add(row);
+            group.byId.add(row);
+            increment(group.firstNames, student.getFirstName());
+        });
+        updatePopularity(student, true);
+        return true;
+    }
+
+    // Removes the earliest indexed student with the same id, name and group
+    public boolean remove(final Student student) {
+        final Key key = new Key(student);
+        final Deque<Row> same = rows.get(key);
+        if (same == null) {
+            return false;
+        }
+        final Row row = same.pollFirst();
+        if (same.isEmpty()) {
+            rows.remove(key);
+        }
+        roster.remove(row);
+        byName.remove(row);
+        byId.remove(row);
+        removeFrom(byFirstName, student.getFirstName(), row);
+        removeFrom(byLastName, student.getLastName(), row);
+        final GroupIndex group = groups.get(student.getGroup());
+        updateGroup(group, () -> {
+            group.byName.remove(row);
+            group.byId.remove(row);
+            decrement(group.firstNames, student.getFirstName());
+        });
+        updatePopularity(student, false);
+        return true;
+    }
+
+    public int size() {
+        return roster.size;
+    }
+
+    private List<Group> getGroups(final Function<GroupIndex, NavigableSet<Row>> order) {
+        return groups.entrySet().stream()
+                .map(entry -> new Group(entry.getKey(), students(order.apply(entry.getValue()))))
+                .collect(Collectors.toList());
+    }
+
+    public List<Group> getGroupsByName() {
+        return getGroups(group -> group.byName);
+    }
+
+    public List<Group> getGroupsById() {
+        return getGroups(group -> group.byId);
+    }
+
+    private static String getLargestGroup(final NavigableSet<GroupIndex> groups) {
+        return groups.isEmpty() ? "" : groups.last().name;
+    }
+
+    public String getLargestGroup() {
+        return getLargestGroup(groupsBySize);
+    }
+
+    public String getLargestGroupFirstName() {
+        return getLargestGroup(groupsByFirstNames);
+    }
+
+    public Set<String> getDistinctFirstNames() {
+        return new TreeSet<>(byFirstName.navigableKeySet());
+    }
+
+    public String getMinStudentFirstName() {
+        return byId.isEmpty() ? "" : byId.first().student.getFirstName();
+    }
+
+    public List<Student> sortStudentsById() {
+        return students(byId);
+    }
+
+    public List<Student> sortStudentsByName() {
+        return students(byName);
+    }
+
+    // Cursor pagination: a page starts right after the last student of the previous one (null for the first page),
+    // so it costs O(log n + limit) however deep it is. Students equal in the order are never split between pages,
+    // so a page may be longer than limit when there are such ties
+    private static List<Student> page(final NavigableSet<Row> rows, final Comparator<Student> order,
+                                      final Student after, final int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Error: Limit should be non-negative");
+        }
+        final List<Student> result = new ArrayList<>(Math.min(limit, rows.size()));
+        for (final Row row : after == null ? rows : rows.tailSet(new Row(after, Long.MAX_VALUE), false)) {
+            if (result.size() >= limit && (result.isEmpty() || order.compare(result.get(result.size() - 1), row.student) != 0)) {
+                break;
+            }
+            result.add(row.student);
+        }
+        return result;
+    }
+
+    public List<Student> pageByName(final Student after, final int limit) {
+        return page(byName, StudentDB.dataComp, after, limit);
+    }
+
+    public List<Student> pageById(final Student after, final int limit) {
+        return page(byId, Comparator.naturalOrder(), after, limit);
+    }
+
+    public List<Student> pageByGroup(final String group, final Student after, final int limit) {
+        final GroupIndex index = groups.get(group);
+        return page(index == null ? Collections.emptyNavigableSet() : index.byName, StudentDB.dataComp, after, limit);
+    }
+
+    private static List<Student> find(final Map<String, NavigableSet<Row>> index, final String key) {
+        return students(index.getOrDefault(key, Collections.emptyNavigableSet()));
+    }
+
+    public List<Student> findStudentsByFirstName(final String name) {
+        return find(byFirstName, name);
+    }
+
+    public List<Student> findStudentsByLastName(final String name) {
+        return find(byLastName, name);
+    }
+
+    public List<Student> findStudentsByGroup(final String group) {
+        final GroupIndex index = groups.get(group);
+        return index == null ? new ArrayList<>() : students(index.byName);
+    }
+
+    public Map<String, String> findStudentNamesByGroup(final String group) {
+        final GroupIndex index = groups.get(group);
+        if (index == null) {
+            return new HashMap<>();
+        }
+        return index.byName.stream().map(row -> row.student)
+                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, (a, b) -> a.compareTo(b) <= 0 ? a : b));
+    }
+
+    public String getMostPopularName() {
+        return popularity.isEmpty() ? "" : popularity.last().getKey();
+    }
+
+    private List<String> getByIndices(final int[] indices, final Function<Student, String> mapper) {
+        return Arrays.stream(indices).mapToObj(i -> mapper.apply(roster.get(i).student)).collect(Collectors.toList());
+    }
+
+    public List<String> getFirstNames(final int[] indices) {
+        return getByIndices(indices, Student::getFirstName);
+    }
+
+    public List<String> getLastNames(final int[] indices) {
+        return getByIndices(indices, Student::getLastName);
+    }
+
+    public List<String> getGroups(final int[] indices) {
+        return getByIndices(indices, Student::getGroup);
+    }
+
+    public List<String> getFullNames(final int[] indices) {
+        return getByIndices(indices, StudentIndex::fullName);
+    }
+}
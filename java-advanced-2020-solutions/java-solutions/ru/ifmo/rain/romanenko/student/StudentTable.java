@@ -0,0 +1,374 @@
+package ru.ifmo.rain.romanenko.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Column store: an id column and three dictionary-encoded string columns.
+// Dictionaries are sorted, so comparing codes is the same as comparing strings,
+// and Student objects are created only for query results.
+public class StudentTable {
+    private final int size;
+    private final int[] ids;
+    private final Column firstNames;
+    private final Column lastNames;
+    private final Column groups;
+
+    private static class Column {
+        private final String[] dictionary;
+        private final int[] codes;
+
+        Column(final String[] dictionary, final int[] codes) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+        }
+
+        String get(final int row) {
+            return dictionary[codes[row]];
+        }
+
+        int code(final String value) {
+            return Arrays.binarySearch(dictionary, value);
+        }
+
+        int compare(final int a, final int b) {
+            return Integer.compare(codes[a], codes[b]);
+        }
+    }
+
+    private static class ColumnBuilder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] column = new int[16];
+
+        void add(final int row, final String value) {
+            if (row == column.length) {
+                column = Arrays.copyOf(column, row * 2);
+            }
+            column[row] = codes.computeIfAbsent(Objects.requireNonNull(value), v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        // Renumbers codes in string order
+        Column build(final int size) {
+            final String[] dictionary = values.toArray(new String[0]);
+            Arrays.sort(dictionary);
+            final int[] remap = new int[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                remap[codes.get(dictionary[i])] = i;
+            }
+            final int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = remap[column[i]];
+            }
+            return new Column(dictionary, result);
+        }
+    }
+
+    public static class Builder {
+        private int size = 0;
+        private int[] ids = new int[16];
+        private final ColumnBuilder firstNames = new ColumnBuilder();
+        private final ColumnBuilder lastNames = new ColumnBuilder();
+        private final ColumnBuilder groups = new ColumnBuilder();
+
+        public Builder add(final int id, final String firstName, final String lastName, final String group) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            firstNames.add(size, firstName);
+            lastNames.add(size, lastName);
+            groups.add(size, group);
+            size++;
+            return this;
+        }
+
+        public Builder add(final Student student) {
+            return add(student.getId(), student.getFirstName(), student.getLastName(), student.getGroup());
+        }
+
+        public StudentTable build() {
+            return new StudentTable(size, Arrays.copyOf(ids, size),
+                    firstNames.build(size), lastNames.build(size), groups.build(size));
+        }
+    }
+
+    private StudentTable(final int size, final int[] ids, final Column firstNames, final Column lastNames, final Column groups) {
+        this.size = size;
+        this.ids = ids;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.groups = groups;
+    }
+
+    public static StudentTable of(final Collection<Student> students) {
+        final Builder builder = new Builder();
+        students.forEach(builder::add);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Student get(final int row) {
+        return new Student(ids[row], firstNames.get(row), lastNames.get(row), groups.get(row));
+    }
+
+    private int compareById(final int a, final int b) {
+        return Integer.compare(ids[a], ids[b]);
+    }
+
+    private int compareByName(final int a, final int b) {
+        int cmp = lastNames.compare(a, b);
+        if (cmp == 0) {
+            cmp = firstNames.compare(a, b);
+        }
+        return cmp == 0 ? compareById(a, b) : cmp;
+    }
+
+    private int[] allRows() {
+        return IntStream.range(0, size).toArray();
+    }
+
+    private int[] rows(final IntPredicate predicate) {
+        return IntStream.range(0, size).filter(predicate).toArray();
+    }
+
+    // Stable merge sort of row numbers, equal rows keep the table order
+    private static int[] sortRows(final int[] rows, final IntBinaryOperator cmp) {
+        int[] src = rows;
+        int[] dst = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int l = 0; l < rows.length; l += 2 * width) {
+                final int m = Math.min(l + width, rows.length);
+                final int r = Math.min(l + 2 * width, rows.length);
+                int i = l;
+                int j = m;
+                for (int k = l; k < r; k++) {
+                    dst[k] = j >= r || i < m && cmp.applyAsInt(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+                }
+            }
+            final int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        return src;
+    }
+
+    private List<Student> materialize(final int[] rows) {
+        return Arrays.stream(rows).mapToObj(this::get).collect(Collectors.toList());
+    }
+
+    private List<Student> sortedByName(final int[] rows) {
+        return materialize(sortRows(rows, this::compareByName));
+    }
+
+    private List<Student> findBy(final Column column, final String value) {
+        final int code = column.code(value);
+        return code < 0 ? new ArrayList<>() : sortedByName(rows(row -> column.codes[row] == code));
+    }
+
+    public List<Student> sortStudentsById() {
+        return materialize(sortRows(allRows(), this::compareById));
+    }
+
+    public List<Student> sortStudentsByName() {
+        return sortedByName(allRows());
+    }
+
+    public List<Student> findStudentsByFirstName(final String name) {
+        return findBy(firstNames, name);
+    }
+
+    public List<Student> findStudentsByLastName(final String name) {
+        return findBy(lastNames, name);
+    }
+
+    public List<Student> findStudentsByGroup(final String group) {
+        return findBy(groups, group);
+    }
+
+    public Map<String, String> findStudentNamesByGroup(final String group) {
+        final int code = groups.code(group);
+        final Map<String, String> result = new HashMap<>();
+        if (code < 0) {
+            return result;
+        }
+        final int[] minFirstName = new int[lastNames.dictionary.length];
+        Arrays.fill(minFirstName, -1);
+        for (int row = 0; row < size; row++) {
+            if (groups.codes[row] == code) {
+                final int last = lastNames.codes[row];
+                final int first = firstNames.codes[row];
+                if (minFirstName[last] == -1 || first < minFirstName[last]) {
+                    minFirstName[last] = first;
+                }
+            }
+        }
+        for (int last = 0; last < minFirstName.length; last++) {
+            if (minFirstName[last] != -1) {
+                result.put(lastNames.dictionary[last], firstNames.dictionary[minFirstName[last]]);
+            }
+        }
+        return result;
+    }
+
+    // Rows grouped by group code (i.e. by group name), keeping the table order inside a group
+    private List<int[]> groupRows() {
+        final int[] counts = new int[groups.dictionary.length];
+        for (int row = 0; row < size; row++) {
+            counts[groups.codes[row]]++;
+        }
+        final List<int[]> result = new ArrayList<>(counts.length);
+        for (final int count : counts) {
+            result.add(new int[count]);
+        }
+        final int[] filled = new int[counts.length];
+        for (int row = 0; row < size; row++) {
+            final int group = groups.codes[row];
+            result.get(group)[filled[group]++] = row;
+        }
+        return result;
+    }
+
+    private List<Group> getGroups(final IntBinaryOperator cmp) {
+        final List<int[]> rows = groupRows();
+        return IntStream.range(0, rows.size())
+                .mapToObj(group -> new Group(groups.dictionary[group], materialize(sortRows(rows.get(group), cmp))))
+                .collect(Collectors.toList());
+    }
+
+    public List<Group> getGroupsByName() {
+        return getGroups(this::compareByName);
+    }
+
+    public List<Group> getGroupsById() {
+        return getGroups(this::compareById);
+    }
+
+    // Codes follow name order, so the first of the largest groups has the smallest name
+    private String getLargestGroup(final int[] counts) {
+        int best = -1;
+        for (int group = 0; group < counts.length; group++) {
+            if (best == -1 || counts[group] > counts[best]) {
+                best = group;
+            }
+        }
+        return best == -1 ? "" : groups.dictionary[best];
+    }
+
+    public String getLargestGroup() {
+        final int[] counts = new int[groups.dictionary.length];
+        for (int row = 0; row < size; row++) {
+            counts[groups.codes[row]]++;
+        }
+        return getLargestGroup(counts);
+    }
+
+    public String getLargestGroupFirstName() {
+        final int[] rows = sortRows(allRows(), (a, b) -> {
+            final int cmp = groups.compare(a, b);
+            return cmp == 0 ? firstNames.compare(a, b) : cmp;
+        });
+        final int[] counts = new int[groups.dictionary.length];
+        for (int i = 0; i < rows.length; i++) {
+            if (i == 0 || groups.compare(rows[i - 1], rows[i]) != 0 || firstNames.compare(rows[i - 1], rows[i]) != 0) {
+                counts[groups.codes[rows[i]]]++;
+            }
+        }
+        return getLargestGroup(counts);
+    }
+
+    public Set<String> getDistinctFirstNames() {
+        return new TreeSet<>(Arrays.asList(firstNames.dictionary));
+    }
+
+    public String getMinStudentFirstName() {
+        int min = -1;
+        for (int row = 0; row < size; row++) {
+            if (min == -1 || ids[row] < ids[min]) {
+                min = row;
+            }
+        }
+        return min == -1 ? "" : firstNames.get(min);
+    }
+
+    private String fullName(final int row) {
+        return firstNames.get(row) + ' ' + lastNames.get(row);
+    }
+
+    // Full names are not ordered like (first, last) code pairs, so ties are broken on the strings
+    public String getMostPopularName() {
+        final int[] rows = sortRows(allRows(), (a, b) -> {
+            int cmp = firstNames.compare(a, b);
+            if (cmp == 0) {
+                cmp = lastNames.compare(a, b);
+            }
+            return cmp == 0 ? groups.compare(a, b) : cmp;
+        });
+        String result = "";
+        int max = 0;
+        for (int i = 0; i < rows.length; ) {
+            int j = i;
+            int distinct = 0;
+            while (j < rows.length && firstNames.compare(rows[i], rows[j]) == 0 && lastNames.compare(rows[i], rows[j]) == 0) {
+                if (j == i || groups.compare(rows[j - 1], rows[j]) != 0) {
+                    distinct++;
+                }
+                j++;
+            }
+            final String name = fullName(rows[i]);
+            if (distinct > max || distinct == max && name.compareTo(result) > 0) {
+                max = distinct;
+                result = name;
+            }
+            i = j;
+        }
+        return result;
+    }
+
+    private List<String> getColumn(final int[] indices, final Column column) {
+        return Arrays.stream(indices).mapToObj(column::get).collect(Collectors.toList());
+    }
+
+    public List<String> getFirstNames(final int[] indices) {
+        return getColumn(indices, firstNames);
+    }
+
+    public List<String> getLastNames(final int[] indices) {
+        return getColumn(indices, lastNames);
+    }
+
+    public List<String> getGroups(final int[] indices) {
+        return getColumn(indices, groups);
+    }
+
+    public List<String> getFullNames(final int[] indices) {
+        return Arrays.stream(indices).mapToObj(this::fullName).collect(Collectors.toList());
+    }
+
+    public List<String> getFirstNames() {
+        return getFirstNames(allRows());
+    }
+
+    public List<String> getLastNames() {
+        return getLastNames(allRows());
+    }
+
+    public List<String> getGroups() {
+        return getGroups(allRows());
+    }
+
+    public List<String> getFullNames() {
+        return getFullNames(allRows());
+    }
+}
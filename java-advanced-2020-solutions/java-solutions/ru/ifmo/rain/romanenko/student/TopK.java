@@ -0,0 +1,69 @@
+package ru.ifmo.rain.romanenko.student;
+
+import java.util.*;
+import java.util.stream.Collector;
+
+// Keeps the offset + limit smallest elements in a bounded max-heap: O(n log k) instead of a full sort.
+// Ties are broken by encounter order, so a page is exactly a slice of the stable full sort.
+class TopK<T> {
+    private final Comparator<Ranked<T>> order;
+    private final int capacity;
+    private final PriorityQueue<Ranked<T>> heap;
+    private long seen = 0;
+
+    private static class Ranked<T> {
+        private final T value;
+        private final long position;
+
+        Ranked(final T value, final long position) {
+            this.value = value;
+            this.position = position;
+        }
+    }
+
+    private TopK(final Comparator<? super T> cmp, final int capacity) {
+        this.order = Comparator.comparing((Ranked<T> ranked) -> ranked.value, cmp).thenComparingLong(ranked -> ranked.position);
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(order.reversed());
+    }
+
+    static <T> Collector<T, ?, List<T>> page(final Comparator<? super T> cmp, final int offset, final int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Error: Offset and limit should be non-negative");
+        }
+        final int capacity = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        return Collector.of(() -> new TopK<T>(cmp, capacity), TopK::add, TopK::combine, topK -> topK.page(offset));
+    }
+
+    private void offer(final Ranked<T> ranked) {
+        if (heap.size() < capacity) {
+            heap.add(ranked);
+        } else if (capacity > 0 && order.compare(ranked, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(ranked);
+        }
+    }
+
+    private void add(final T value) {
+        offer(new Ranked<>(value, seen++));
+    }
+
+    // right holds the elements encountered after the ones of this
+    private TopK<T> combine(final TopK<T> right) {
+        for (final Ranked<T> ranked : right.heap) {
+            offer(new Ranked<>(ranked.value, seen + ranked.position));
+        }
+        seen += right.seen;
+        return this;
+    }
+
+    private List<T> page(final int offset) {
+        final List<Ranked<T>> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        final List<T> result = new ArrayList<>(Math.max(sorted.size() - offset, 0));
+        for (int i = offset; i < sorted.size(); i++) {
+            result.add(sorted.get(i).value);
+        }
+        return result;
+    }
+}